@@ -0,0 +1,383 @@
+package io.jenkins.update_center;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact index of the files in a repository and their metadata.
+ *
+ * Data is stored in columns: Group and artifact IDs are interned, checksums are stored in binary form, and timestamps
+ * and sizes as primitives, so that tens of thousands of files don't need tens of thousands of objects each.
+ *
+ * Add files using {@link #add(String, String, String, String, byte[], byte[], long, long)}, then call {@link #seal()}
+ * before looking them up. Files can be added to a sealed index, e.g. to apply changes to an index read from disk, but it
+ * needs to be sealed again. Not thread-safe while adding files.
+ */
+final class ArtifactIndex {
+    private static final int SHA1_LENGTH = 20;
+    private static final int SHA256_LENGTH = 32;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private static final int FORMAT_MAGIC = 0x41494458; // AIDX
+    private static final int FORMAT_VERSION = 1;
+
+    private final Map<String, String> strings = new HashMap<>();
+    private final Set<String> poms = new HashSet<>();
+
+    private long created;
+    private long lastModified;
+
+    private int size;
+    private String[] groupIds = new String[1024];
+    private String[] artifactIds = new String[1024];
+    private String[] versions = new String[1024];
+    private String[] packagings = new String[1024];
+    private byte[] sha1s = new byte[1024 * SHA1_LENGTH];
+    private byte[] sha256s = new byte[1024 * SHA256_LENGTH];
+    private long[] timestamps = new long[1024];
+    private long[] sizes = new long[1024];
+
+    /**
+     * Row numbers sorted by coordinates, for binary search.
+     */
+    private int[] order;
+
+    /**
+     * Adds a file.
+     *
+     * @return the row of the new file
+     */
+    int add(@Nonnull String groupId, @Nonnull String artifactId, @Nonnull String version, @Nonnull String packaging,
+            @CheckForNull byte[] sha1, @CheckForNull byte[] sha256, long timestamp, long size) {
+        if (this.size == groupIds.length) {
+            grow();
+        }
+        final int row = this.size++;
+        groupIds[row] = intern(groupId);
+        artifactIds[row] = intern(artifactId);
+        versions[row] = version;
+        packagings[row] = intern(packaging);
+        setChecksum(sha1s, row, SHA1_LENGTH, sha1);
+        setChecksum(sha256s, row, SHA256_LENGTH, sha256);
+        timestamps[row] = timestamp;
+        sizes[row] = size;
+        lastModified = Math.max(lastModified, timestamp);
+        order = null;
+        return row;
+    }
+
+    /**
+     * Records that a POM file exists. Only the existence of POM files is indexed.
+     *
+     * @param gav the coordinates of the POM, see {@link ArtifactCoordinates#getGav()}
+     * @param timestamp the modification timestamp of the POM
+     */
+    void addPom(@Nonnull String gav, long timestamp) {
+        poms.add(gav);
+        lastModified = Math.max(lastModified, timestamp);
+    }
+
+    boolean hasPom(@Nonnull String gav) {
+        return poms.contains(gav);
+    }
+
+    /**
+     * @return the latest modification timestamp of any file added to this index
+     */
+    long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return when the complete list of files was last added to this index, see {@link #setCreated(long)}
+     */
+    long getCreated() {
+        return created;
+    }
+
+    void setCreated(long created) {
+        this.created = created;
+    }
+
+    /**
+     * Prepares this index for lookups. If the same file was added more than once, the last one is used.
+     */
+    void seal() {
+        final int[] sorted = new int[size];
+        for (int row = 0; row < size; row++) {
+            sorted[row] = row;
+        }
+        sortRows(sorted, new int[size], 0, size);
+
+        // remove duplicates, keeping the row added last (sorted first)
+        final int[] unique = new int[sorted.length];
+        int count = 0;
+        for (int row : sorted) {
+            if (count == 0 || compare(unique[count - 1], groupIds[row], artifactIds[row], versions[row], packagings[row]) != 0) {
+                unique[count++] = row;
+            }
+        }
+        order = Arrays.copyOf(unique, count);
+    }
+
+    /**
+     * @return the row of the file with the specified coordinates, or -1 if there is no such file
+     */
+    int find(@Nonnull ArtifactCoordinates coordinates) {
+        if (order == null) {
+            throw new IllegalStateException("Index is not sealed");
+        }
+        int low = 0;
+        int high = order.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int c = compare(order[mid], coordinates.groupId, coordinates.artifactId, coordinates.version, coordinates.packaging);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return order[mid];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the rows of all files, without duplicates
+     */
+    int[] rows() {
+        if (order == null) {
+            throw new IllegalStateException("Index is not sealed");
+        }
+        return order.clone();
+    }
+
+    ArtifactCoordinates getCoordinates(int row) {
+        return new ArtifactCoordinates(groupIds[row], artifactIds[row], versions[row], packagings[row]);
+    }
+
+    String getPackaging(int row) {
+        return packagings[row];
+    }
+
+    @CheckForNull
+    byte[] getSha1(int row) {
+        return getChecksum(sha1s, row, SHA1_LENGTH);
+    }
+
+    @CheckForNull
+    byte[] getSha256(int row) {
+        return getChecksum(sha256s, row, SHA256_LENGTH);
+    }
+
+    long getTimestamp(int row) {
+        return timestamps[row];
+    }
+
+    long getSize(int row) {
+        return sizes[row];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Writes this index to the specified file, replacing it atomically. Duplicate files are only written once.
+     */
+    void write(@Nonnull File file) throws IOException {
+        final int[] rows = rows();
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+        final Path tmp = Files.createTempFile(parent.toPath(), file.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(FORMAT_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(created);
+                out.writeLong(lastModified);
+                out.writeInt(poms.size());
+                for (String pom : poms) {
+                    out.writeUTF(pom);
+                }
+                out.writeInt(rows.length);
+                for (int row : rows) {
+                    out.writeUTF(groupIds[row]);
+                    out.writeUTF(artifactIds[row]);
+                    out.writeUTF(versions[row]);
+                    out.writeUTF(packagings[row]);
+                    out.write(sha1s, row * SHA1_LENGTH, SHA1_LENGTH);
+                    out.write(sha256s, row * SHA256_LENGTH, SHA256_LENGTH);
+                    out.writeLong(timestamps[row]);
+                    out.writeLong(sizes[row]);
+                }
+            }
+            try {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write(File)}. The returned index is sealed.
+     *
+     * @throws IOException if the file cannot be read or was written in an unsupported format
+     */
+    @Nonnull
+    static ArtifactIndex read(@Nonnull File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file.toPath()))))) {
+            if (in.readInt() != FORMAT_MAGIC) {
+                throw new IOException("Not an artifact index: " + file);
+            }
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported artifact index format " + version + ": " + file);
+            }
+            final ArtifactIndex index = new ArtifactIndex();
+            index.created = in.readLong();
+            final long lastModified = in.readLong();
+            final int pomCount = in.readInt();
+            for (int i = 0; i < pomCount; i++) {
+                index.poms.add(in.readUTF());
+            }
+            final int rowCount = in.readInt();
+            final byte[] sha1 = new byte[SHA1_LENGTH];
+            final byte[] sha256 = new byte[SHA256_LENGTH];
+            for (int i = 0; i < rowCount; i++) {
+                final String groupId = in.readUTF();
+                final String artifactId = in.readUTF();
+                final String artifactVersion = in.readUTF();
+                final String packaging = in.readUTF();
+                in.readFully(sha1);
+                in.readFully(sha256);
+                index.add(groupId, artifactId, artifactVersion, packaging, sha1, sha256, in.readLong(), in.readLong());
+            }
+            // the high-water mark may be later than any file, e.g. if the latest file was a duplicate
+            index.lastModified = lastModified;
+            index.seal();
+            return index;
+        }
+    }
+
+    /**
+     * Merge sorts the rows in the specified range by coordinates, and rows with the same coordinates by descending row.
+     * Sorts primitive row numbers, as {@link Arrays#sort(Object[], java.util.Comparator)} would need them boxed.
+     *
+     * @param rows the rows to sort
+     * @param buffer a buffer at least as long as {@code rows}
+     */
+    private void sortRows(int[] rows, int[] buffer, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                final int row = rows[i];
+                int j = i - 1;
+                while (j >= from && compareRows(rows[j], row) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+        final int mid = (from + to) >>> 1;
+        sortRows(rows, buffer, from, mid);
+        sortRows(rows, buffer, mid, to);
+        if (compareRows(rows[mid - 1], rows[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || left < mid && compareRows(buffer[left], buffer[right]) <= 0) {
+                rows[i] = buffer[left++];
+            } else {
+                rows[i] = buffer[right++];
+            }
+        }
+    }
+
+    private int compareRows(int a, int b) {
+        final int c = compare(a, groupIds[b], artifactIds[b], versions[b], packagings[b]);
+        return c != 0 ? c : Integer.compare(b, a);
+    }
+
+    private int compare(int row, String groupId, String artifactId, String version, String packaging) {
+        int c = artifactIds[row].compareTo(artifactId);
+        if (c == 0) {
+            c = groupIds[row].compareTo(groupId);
+        }
+        if (c == 0) {
+            c = versions[row].compareTo(version);
+        }
+        if (c == 0) {
+            c = packagings[row].compareTo(packaging);
+        }
+        return c;
+    }
+
+    private String intern(String s) {
+        return strings.computeIfAbsent(s, k -> k);
+    }
+
+    private void grow() {
+        final int capacity = groupIds.length * 2;
+        groupIds = Arrays.copyOf(groupIds, capacity);
+        artifactIds = Arrays.copyOf(artifactIds, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        packagings = Arrays.copyOf(packagings, capacity);
+        sha1s = Arrays.copyOf(sha1s, capacity * SHA1_LENGTH);
+        sha256s = Arrays.copyOf(sha256s, capacity * SHA256_LENGTH);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+    }
+
+    /*
+     * Missing checksums are stored as all zeros, which no real checksum is.
+     */
+    private static void setChecksum(byte[] column, int row, int length, @CheckForNull byte[] checksum) {
+        if (checksum != null && checksum.length != length) {
+            throw new IllegalArgumentException("Unexpected checksum length " + checksum.length);
+        }
+        if (checksum == null) {
+            Arrays.fill(column, row * length, (row + 1) * length, (byte) 0);
+        } else {
+            System.arraycopy(checksum, 0, column, row * length, length);
+        }
+    }
+
+    @CheckForNull
+    private static byte[] getChecksum(byte[] column, int row, int length) {
+        final byte[] checksum = Arrays.copyOfRange(column, row * length, (row + 1) * length);
+        for (byte b : checksum) {
+            if (b != 0) {
+                return checksum;
+            }
+        }
+        return null;
+    }
+}
@@ -1,14 +1,14 @@
 package io.jenkins.update_center;
 
-import com.alibaba.fastjson.JSON;
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import com.alibaba.fastjson.JSONReader;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import io.jenkins.update_center.util.ByteArrayCache;
 import io.jenkins.update_center.util.Environment;
 import io.jenkins.update_center.util.HttpHelper;
-import java.util.Iterator;
-import java.util.function.Predicate;
+import io.jenkins.update_center.util.SharedHttpClient;
+import io.jenkins.update_center.util.SingleFlight;
 import okhttp3.Credentials;
 import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
@@ -17,31 +17,39 @@ import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.TeeOutputStream;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.tools.ant.filters.StringInputStream;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.jar.Manifest;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 public class ArtifactoryRepositoryImpl extends BaseMavenRepository {
     private static final Logger LOGGER = Logger.getLogger(ArtifactoryRepositoryImpl.class.getName());
@@ -53,7 +61,14 @@ public class ArtifactoryRepositoryImpl extends BaseMavenRepository {
     private static final String ARTIFACTORY_ZIP_ENTRY_URL = ARTIFACTORY_URL + "%s/%s!%s";
     private static final String ARTIFACTORY_FILE_URL = ARTIFACTORY_URL + "%s/%s";
 
-    private static final String AQL_QUERY = "items.find({\"repo\":{\"$eq\":\"releases\"},\"$or\":[{\"name\":{\"$match\":\"*.hpi\"}},{\"name\":{\"$match\":\"*.jpi\"}},{\"name\":{\"$match\":\"*.war\"}},{\"name\":{\"$match\":\"*.pom\"}}]}).include(\"repo\", \"path\", \"name\", \"modified\", \"created\", \"sha256\", \"actual_sha1\", \"size\")";
+    private static final String AQL_QUERY = "items.find({\"repo\":{\"$eq\":\"releases\"},%s\"$or\":[{\"name\":{\"$match\":\"*.hpi\"}},{\"name\":{\"$match\":\"*.jpi\"}},{\"name\":{\"$match\":\"*.war\"}},{\"name\":{\"$match\":\"*.pom\"}}]}).include(\"repo\", \"path\", \"name\", \"modified\", \"created\", \"sha256\", \"actual_sha1\", \"size\")";
+    private static final String AQL_MODIFIED_AFTER = "\"modified\":{\"$gt\":\"%s\"},";
+
+    /**
+     * The index of the repository is kept between runs, and only updated with files modified since then.
+     * As that doesn't notice deleted files, the complete index is requested again once it is this old.
+     */
+    private static final long INDEX_MAX_AGE = TimeUnit.HOURS.toMillis(Environment.getInteger("ARTIFACTORY_INDEX_MAX_AGE_HOURS", 24));
 
     private final String username;
     private final String password;
@@ -61,11 +76,11 @@ public class ArtifactoryRepositoryImpl extends BaseMavenRepository {
     private File cacheDirectory = new File(Environment.getString("ARTIFACTORY_CACHEDIR", "caches/artifactory"));
 
     private boolean initialized = false;
+    private volatile boolean cacheMigrated = false;
 
-    private Map<String, JsonFile> files = new HashMap<>();
+    private ArtifactIndex index;
     private Set<ArtifactCoordinates> plugins;
     private Set<ArtifactCoordinates> wars;
-    private Set<ArtifactCoordinates> poms;
 
     public ArtifactoryRepositoryImpl(String username, String password) {
         this.username = username;
@@ -134,89 +149,179 @@ public class ArtifactoryRepositoryImpl extends BaseMavenRepository {
     private static class JsonFile {
         public String path; // example: org/acme/whatever/1.0
         public String name; // example: whatever-1.0.jar
-        public String actual_sha1; // base64
-        public String sha256; // base64
+        public String actual_sha1; // hex
+        public String sha256; // hex
         public Date modified;
         // TODO record 'created' date and warn about large discrepancies
         public long size; // bytes
     }
 
-    private static class JsonResponse {
-        public List<JsonFile> results;
-    }
-
-    private Map<String, String> cache = new HashMap<>();
+    private final ByteArrayCache cache = new ByteArrayCache(Environment.getInteger("ARTIFACTORY_MEMORY_CACHE_MB", 64) * 1024L * 1024L);
+    private final Map<String, Failure> failures = new ConcurrentHashMap<>();
+    private final SingleFlight<String, File> downloads = new SingleFlight<>();
 
     private static final int CACHE_ENTRY_MAX_LENGTH = 1024 * 64;
 
+    private static final String FAILURE_SUFFIX = ".failed";
+    private static final String FAILURES_MIGRATED_MARKER = "failures-migrated";
+    /**
+     * How long to remember that a file was not found. Releases are not usually deployed after being looked up, and the
+     * contents of their archives never change, so this can be long.
+     */
+    private static final long NOT_FOUND_TTL = TimeUnit.HOURS.toMillis(Environment.getInteger("ARTIFACTORY_NOT_FOUND_TTL_HOURS", 24 * 30));
+    /**
+     * How long to remember other failures, like server errors.
+     */
+    private static final long ERROR_TTL = TimeUnit.MINUTES.toMillis(Environment.getInteger("ARTIFACTORY_ERROR_TTL_MINUTES", 60));
+    private static final int MAX_ATTEMPTS = Environment.getInteger("ARTIFACTORY_MAX_ATTEMPTS", 4);
+    private static final long RETRY_BASE_DELAY_MILLIS = 500;
+
     private void initialize() throws IOException {
         if (initialized) {
             throw new IllegalStateException("re-initialized");
         }
         LOGGER.log(Level.INFO, "Initializing " + this.getClass().getName());
 
-        OkHttpClient client = new OkHttpClient.Builder().build();
-        Request request = new Request.Builder().url(ARTIFACTORY_AQL_URL).addHeader("Authorization", Credentials.basic(username, password)).post(RequestBody.create(AQL_QUERY, MediaType.parse("text/plain; charset=utf-8"))).build();
-        try (final ResponseBody body = HttpHelper.body(client.newCall(request).execute())) {
+        final File indexFile = new File(cacheDirectory, "index.bin");
+        this.index = readIndex(indexFile);
+        final String query;
+        if (this.index == null) {
+            this.index = new ArtifactIndex();
+            this.index.setCreated(System.currentTimeMillis());
+            query = String.format(AQL_QUERY, "");
+        } else {
+            final String modifiedAfter = Instant.ofEpochMilli(this.index.getLastModified()).toString();
+            LOGGER.log(Level.INFO, "Requesting files modified after " + modifiedAfter);
+            query = String.format(AQL_QUERY, String.format(AQL_MODIFIED_AFTER, modifiedAfter));
+        }
+
+        Request request = new Request.Builder().url(ARTIFACTORY_AQL_URL).addHeader("Authorization", Credentials.basic(username, password)).post(RequestBody.create(query, MediaType.parse("text/plain; charset=utf-8"))).build();
+        int results = 0;
+        try (final ResponseBody body = HttpHelper.body(SharedHttpClient.get().newCall(request).execute())) {
             final MediaType mediaType = body.contentType();
-            JsonResponse json = JSON.parseObject(body.byteStream(), mediaType == null ? StandardCharsets.UTF_8 : mediaType.charset(), JsonResponse.class);
-            json.results.forEach(it -> this.files.put("/" + it.path + "/" + it.name, it));
-        }
-        this.poms = this.files.values().stream().filter(it -> it.name.endsWith(".pom")).map(ArtifactoryRepositoryImpl::toGav).filter(Objects::nonNull).collect(Collectors.toSet());
-        this.plugins = this.files.values().stream().filter(it -> it.name.endsWith(".hpi") || it.name.endsWith(".jpi")).map(ArtifactoryRepositoryImpl::toGav).filter(Objects::nonNull).collect(Collectors.toSet());
-        removeIf(this.plugins, it -> !this.poms.contains(new ArtifactCoordinates(it.groupId, it.artifactId, it.version, "pom")));
-        this.wars = this.files.values().stream().filter(it -> it.name.endsWith(".war")).map(ArtifactoryRepositoryImpl::toGav).collect(Collectors.toSet());
-        removeIf(this.wars, it -> !this.poms.contains(new ArtifactCoordinates(it.groupId, it.artifactId, it.version, "pom")));
-        LOGGER.log(Level.INFO, "Initialized " + this.getClass().getName());
+            final Charset charset = mediaType == null ? StandardCharsets.UTF_8 : mediaType.charset(StandardCharsets.UTF_8);
+            try (JSONReader reader = new JSONReader(new InputStreamReader(body.byteStream(), charset))) {
+                reader.startObject();
+                while (reader.hasNext()) {
+                    final String key = reader.readString();
+                    if ("results".equals(key)) {
+                        // Only materialize one result at a time, the complete index lists every release in the repository
+                        reader.startArray();
+                        while (reader.hasNext()) {
+                            addFile(reader.readObject(JsonFile.class));
+                            results++;
+                        }
+                        reader.endArray();
+                    } else {
+                        reader.readObject();
+                    }
+                }
+                reader.endObject();
+            }
+        }
+        LOGGER.log(Level.INFO, "Received " + results + " results from " + ARTIFACTORY_AQL_URL);
+        this.index.seal();
+        try {
+            this.index.write(indexFile);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to write index to " + indexFile, e);
+        }
+
+        final Set<ArtifactCoordinates> plugins = new HashSet<>();
+        final Set<ArtifactCoordinates> wars = new HashSet<>();
+        for (int row : this.index.rows()) {
+            final ArtifactCoordinates coordinates = this.index.getCoordinates(row);
+            if (!this.index.hasPom(coordinates.getGav())) {
+                // Not logged while parsing, as the pom may be listed after the artifact
+                LOGGER.log(Level.INFO, "Removing artifact file without corresponding pom file: " + coordinates);
+            } else if (coordinates.packaging.equals("war")) {
+                wars.add(coordinates);
+            } else {
+                plugins.add(coordinates);
+            }
+        }
+        this.plugins = plugins;
+        this.wars = wars;
+        LOGGER.log(Level.INFO, "Initialized " + this.getClass().getName() + " with " + plugins.size() + " plugin releases and " + wars.size() + " core releases");
     }
 
-    // We cannot use Collection#removeIf because we want to log this
-    private static <E> void removeIf(Collection<E> collection, Predicate<? super E> filter) {
-        final Iterator<E> each = collection.iterator();
-        while (each.hasNext()) {
-            final E current = each.next();
-            if (filter.test(current)) {
-                each.remove();
-                LOGGER.log(Level.INFO, "Removing artifact file without corresponding pom file: " + current);
+    /**
+     * Reads the index written by a previous run, unless it's too old to be updated.
+     */
+    @CheckForNull
+    private static ArtifactIndex readIndex(File indexFile) {
+        if (!indexFile.isFile()) {
+            return null;
+        }
+        try {
+            final ArtifactIndex index = ArtifactIndex.read(indexFile);
+            if (index.getCreated() + INDEX_MAX_AGE < System.currentTimeMillis()) {
+                LOGGER.log(Level.INFO, "Index " + indexFile + " was created at " + Instant.ofEpochMilli(index.getCreated()) + ", requesting the complete index");
+                return null;
             }
+            return index;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to read index from " + indexFile + ", requesting the complete index", e);
+            return null;
+        }
+    }
+
+    /**
+     * Adds an AQL result to the index. POM files are only recorded as existing.
+     */
+    private void addFile(JsonFile file) throws IOException {
+        final boolean pom = file.name.endsWith(".pom");
+        if (!pom && !file.name.endsWith(".hpi") && !file.name.endsWith(".jpi") && !file.name.endsWith(".war")) {
+            return;
+        }
+        final ArtifactCoordinates coordinates = toGav(file);
+        if (coordinates == null) {
+            return;
+        }
+        final long modified = file.modified == null ? 0 : file.modified.getTime();
+        if (pom) {
+            this.index.addPom(coordinates.getGav(), modified);
+        } else {
+            this.index.add(coordinates.groupId, coordinates.artifactId, coordinates.version, coordinates.packaging,
+                    decodeHex(file.actual_sha1), decodeHex(file.sha256), modified, file.size);
         }
     }
 
-    private String hexToBase64(String hex) throws IOException {
+    @CheckForNull
+    private static byte[] decodeHex(@CheckForNull String hex) throws IOException {
+        if (hex == null) {
+            return null;
+        }
         try {
-            byte[] decodedHex = Hex.decodeHex(hex);
-            return Base64.encodeBase64String(decodedHex);
+            return Hex.decodeHex(hex);
         } catch (DecoderException e) {
-            throw new IOException("failed to convert hex to base64", e);
+            throw new IOException("failed to decode hex checksum " + hex, e);
         }
     }
 
     @Override
-    @SuppressFBWarnings(value="DCN_NULLPOINTER_EXCEPTION",
-                        justification="Catching NPE is safer than trying to guard all cases")
     public ArtifactMetadata getMetadata(MavenArtifact artifact) throws IOException {
         ensureInitialized();
-        ArtifactMetadata ret = new ArtifactMetadata();
-        final JsonFile jsonFile = files.get("/" + getUri(artifact.artifact));
-        try {
-            ret.sha1 = hexToBase64(jsonFile.actual_sha1);
-        } catch (NullPointerException e) {
+        final int row = index.find(artifact.artifact);
+        final byte[] sha1 = row < 0 ? null : index.getSha1(row);
+        if (sha1 == null) {
             LOGGER.log(Level.WARNING, "No artifact: " + artifact.toString());
             return null;
         }
-        String hexSha256 = jsonFile.sha256;
-        if (hexSha256 != null) {
-            ret.sha256 = hexToBase64(hexSha256);
-        } else {
+        final byte[] sha256 = index.getSha256(row);
+        if (sha256 == null) {
             LOGGER.log(Level.WARNING, "No SHA-256: " + artifact.toString());
             return null;
         }
-        ret.timestamp = jsonFile.modified.getTime();
-        ret.size = jsonFile.size;
+        ArtifactMetadata ret = new ArtifactMetadata();
+        ret.sha1 = Base64.encodeBase64String(sha1);
+        ret.sha256 = Base64.encodeBase64String(sha256);
+        ret.timestamp = index.getTimestamp(row);
+        ret.size = index.getSize(row);
         return ret;
     }
 
-    private void ensureInitialized() throws IOException {
+    private synchronized void ensureInitialized() throws IOException {
         if (!initialized) {
             initialize();
             initialized = true;
@@ -237,73 +342,237 @@ public class ArtifactoryRepositoryImpl extends BaseMavenRepository {
     }
 
     private InputStream getFileContent(String url) throws IOException {
-        if (this.cache.containsKey(url)) {
-            String entry = this.cache.get(url);
-            if (entry == null) {
-                throw new IOException("Failed to retrieve content of " + url + " (cached)");
-            }
-            return new StringInputStream(entry);
+        checkFailure(url);
+        final byte[] entry = this.cache.get(url);
+        if (entry != null) {
+            return new ByteArrayInputStream(entry);
         }
         File cacheFile = getFile(url);
         return new FileInputStream(cacheFile);
     }
 
+    /**
+     * A failed request, remembered so it's not repeated until it expires.
+     */
+    private static class Failure {
+        private final int code;
+        private final long time;
+
+        private Failure(int code, long time) {
+            this.code = code;
+            this.time = time;
+        }
+
+        private boolean isNotFound() {
+            return isNotFound(code);
+        }
+
+        private static boolean isNotFound(int code) {
+            return code == 404 || code == 410;
+        }
+
+        private boolean isExpired() {
+            final long ttl = isNotFound() ? NOT_FOUND_TTL : ERROR_TTL;
+            return time + ttl < System.currentTimeMillis();
+        }
+
+        /**
+         * @return the exception to throw for this failure, {@link FileNotFoundException} if the file doesn't exist
+         */
+        private IOException toException(String url, boolean cached) {
+            final String message = "Failed to retrieve content of " + url + " (" + (cached ? "cached " : "") + "HTTP " + code + ")";
+            return isNotFound() ? new FileNotFoundException(message) : new IOException(message);
+        }
+    }
+
+    private void checkFailure(String url) throws IOException {
+        final Failure failure = this.failures.get(url);
+        if (failure != null) {
+            if (!failure.isExpired()) {
+                throw failure.toException(url, true);
+            }
+            this.failures.remove(url, failure);
+        }
+    }
+
+    /**
+     * Returns the cache file for the specified URL, downloading it if necessary.
+     * Concurrent calls for the same URL share a single download.
+     */
     private File getFile(final String url) throws IOException {
+        checkFailure(url);
+        ensureCacheMigrated();
+        return downloads.load(url, () -> fetchFile(url));
+    }
+
+    private void ensureCacheMigrated() throws IOException {
+        if (!cacheMigrated) {
+            synchronized (this) {
+                if (!cacheMigrated) {
+                    migrateFailures();
+                    cacheMigrated = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Failures used to be recorded as a directory in place of the cache file, without details. Converts them to
+     * failure files once, so that looking up a file in the cache doesn't need to check for them.
+     */
+    private void migrateFailures() throws IOException {
+        final File marker = new File(cacheDirectory, FAILURES_MIGRATED_MARKER);
+        if (marker.exists() || !cacheDirectory.isDirectory()) {
+            return;
+        }
+        int migrated = 0;
+        // Only look at prefix directories, not e.g. the contents directory
+        final File[] prefixDirs = cacheDirectory.listFiles(f -> f.getName().length() == 2 && f.isDirectory());
+        for (File prefixDir : prefixDirs == null ? new File[0] : prefixDirs) {
+            final File[] legacyFailures = prefixDir.listFiles(f -> f.getName().length() == 64 && f.isDirectory());
+            for (File legacyFailure : legacyFailures == null ? new File[0] : legacyFailures) {
+                // No details were recorded, so assume the artifact wasn't found
+                writeFailure(new File(prefixDir, legacyFailure.getName() + FAILURE_SUFFIX), new Failure(404, legacyFailure.lastModified()));
+                Files.delete(legacyFailure.toPath());
+                migrated++;
+            }
+        }
+        Files.write(marker.toPath(), new byte[0]);
+        LOGGER.log(Level.INFO, "Migrated " + migrated + " failures recorded as directories in " + cacheDirectory);
+    }
+
+    private File fetchFile(final String url) throws IOException {
         final String path = new URL(url).getPath();
         final String sha256 = DigestUtils.sha256Hex(path);
         final String sha256prefix = sha256.substring(0, 2); // to limit number of files in top-level directory
         final File cachePrefixDir = new File(cacheDirectory, sha256prefix);
-        if (!cachePrefixDir.exists() && !cachePrefixDir.mkdirs()) {
-            LOGGER.log(Level.WARNING, "Failed to create cache prefix directory " + cachePrefixDir);
-        }
         File cacheFile = new File(cachePrefixDir, sha256);
+        File failureFile = new File(cachePrefixDir, sha256 + FAILURE_SUFFIX);
 
-        if (!cacheFile.exists()) {
-            // High log level, but during regular operation this will indicate when an artifact is newly picked up, so useful to know.
-            LOGGER.log(Level.INFO, "Downloading : " + url + " (not found in cache) to " + cacheFile.getName());
+        if (cacheFile.isFile()) {
+            // read from cached file
+            if (cacheFile.length() <= CACHE_ENTRY_MAX_LENGTH) {
+                this.cache.put(url, Files.readAllBytes(cacheFile.toPath()));
+            }
+            return cacheFile;
+        }
 
-            final File parentFile = cacheFile.getParentFile();
-            if (!parentFile.mkdirs() && !parentFile.isDirectory()) {
-                throw new IllegalStateException("Failed to create non-existing directory " + parentFile);
+        final Failure previousFailure = readFailure(failureFile);
+        if (previousFailure != null) {
+            if (!previousFailure.isExpired()) {
+                this.failures.put(url, previousFailure);
+                throw previousFailure.toException(url, true);
             }
+            LOGGER.log(Level.INFO, "Retrying " + url + " after HTTP " + previousFailure.code + " at " + Instant.ofEpochMilli(previousFailure.time));
+        }
+
+        // High log level, but during regular operation this will indicate when an artifact is newly picked up, so useful to know.
+        LOGGER.log(Level.INFO, "Downloading : " + url + " (not found in cache) to " + cacheFile.getName());
+        if (!cachePrefixDir.mkdirs() && !cachePrefixDir.isDirectory()) {
+            LOGGER.log(Level.WARNING, "Failed to create cache prefix directory " + cachePrefixDir);
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            final int code;
             try {
-                OkHttpClient.Builder builder = new OkHttpClient.Builder();
-                OkHttpClient client = builder.build();
-                Request request = new Request.Builder().url(url).get().build();
-                final Response response = client.newCall(request).execute();
-                if (response.isSuccessful()) {
-                    try (final ResponseBody body = HttpHelper.body(response)) {
-                        try (InputStream inputStream = body.byteStream(); ByteArrayOutputStream baos = new ByteArrayOutputStream(); FileOutputStream fos = new FileOutputStream(cacheFile); TeeOutputStream tos = new TeeOutputStream(fos, baos)) {
-                            IOUtils.copy(inputStream, tos);
-                            if (baos.size() <= CACHE_ENTRY_MAX_LENGTH) {
-                                final String value = baos.toString("UTF-8");
-                                LOGGER.log(Level.FINE, () -> "Caching in memory: " + url + " with content: " + value);
-                                this.cache.put(url, value);
-                            }
-                        }
-                    }
-                } else {
-                    LOGGER.log(Level.INFO, "Received HTTP error response: " + response.code() + " for URL: " + url);
-                    if (!cacheFile.mkdir()) {
-                        LOGGER.log(Level.WARNING, "Failed to create cache 'not found' directory" + cacheFile);
-                    }
+                code = download(url, cacheFile);
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e instanceof IOException ? (IOException) e : new IOException(e);
                 }
-            } catch (RuntimeException e) {
-                throw new IOException(e);
+                LOGGER.log(Level.INFO, "Failed to download " + url + " (attempt " + attempt + " of " + MAX_ATTEMPTS + "): " + e);
+                backOff(attempt);
+                continue;
             }
-        } else {
-            if (cacheFile.isDirectory()) {
-                // indicator that this is a cached error
-                this.cache.put(url, null);
-                throw new IOException("Failed to retrieve content of " + url + " (cached)");
-            } else {
-                // read from cached file
-                if (cacheFile.length() <= CACHE_ENTRY_MAX_LENGTH) {
-                    this.cache.put(url, FileUtils.readFileToString(cacheFile, StandardCharsets.UTF_8));
+            if (code == 200) {
+                Files.deleteIfExists(failureFile.toPath());
+                return cacheFile;
+            }
+            LOGGER.log(Level.INFO, "Received HTTP error response: " + code + " for URL: " + url);
+            if (code < 500 || attempt >= MAX_ATTEMPTS) {
+                final Failure failure = new Failure(code, System.currentTimeMillis());
+                writeFailure(failureFile, failure);
+                this.failures.put(url, failure);
+                throw failure.toException(url, false);
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Downloads the specified URL to the cache file.
+     *
+     * @return the HTTP status code, 200 if the file was downloaded
+     */
+    private int download(String url, File cacheFile) throws IOException {
+        Request request = new Request.Builder().url(url).get().build();
+        try (final Response response = SharedHttpClient.get().newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                return response.code();
+            }
+            // Write to a temporary file first, so other processes never see partial content
+            final Path tmp = Files.createTempFile(cacheFile.getParentFile().toPath(), cacheFile.getName(), ".tmp");
+            try (final ResponseBody body = HttpHelper.body(response)) {
+                try (InputStream inputStream = body.byteStream(); ByteArrayOutputStream baos = new ByteArrayOutputStream(); OutputStream fos = Files.newOutputStream(tmp); TeeOutputStream tos = new TeeOutputStream(fos, baos)) {
+                    IOUtils.copy(inputStream, tos);
+                    if (baos.size() <= CACHE_ENTRY_MAX_LENGTH) {
+                        final byte[] value = baos.toByteArray();
+                        LOGGER.log(Level.FINE, () -> "Caching in memory: " + url + " with content: " + new String(value, StandardCharsets.UTF_8));
+                        this.cache.put(url, value);
+                    }
                 }
+                moveIntoPlace(tmp, cacheFile);
+            } finally {
+                Files.deleteIfExists(tmp);
             }
+            return 200;
+        }
+    }
+
+    /**
+     * Waits before the next attempt, exponentially longer for each attempt, with random jitter so that concurrent
+     * downloads don't retry at the same time.
+     */
+    private static void backOff(int attempt) throws IOException {
+        final long delay = RETRY_BASE_DELAY_MILLIS << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while waiting to retry").initCause(e);
+        }
+    }
+
+    @CheckForNull
+    private static Failure readFailure(File failureFile) {
+        if (!failureFile.isFile()) {
+            return null;
+        }
+        try {
+            final String[] parts = new String(Files.readAllBytes(failureFile.toPath()), StandardCharsets.UTF_8).trim().split(" ");
+            return new Failure(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to read " + failureFile, e);
+            return null;
+        }
+    }
+
+    private static void writeFailure(File failureFile, Failure failure) throws IOException {
+        final Path tmp = Files.createTempFile(failureFile.getParentFile().toPath(), failureFile.getName(), ".tmp");
+        try {
+            Files.write(tmp, (failure.code + " " + failure.time).getBytes(StandardCharsets.UTF_8));
+            moveIntoPlace(tmp, failureFile);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void moveIntoPlace(Path tmp, File target) throws IOException {
+        try {
+            Files.move(tmp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(tmp, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
         }
-        return cacheFile;
     }
 
     @Override
@@ -311,6 +580,97 @@ public class ArtifactoryRepositoryImpl extends BaseMavenRepository {
         return getFileContent(String.format(ARTIFACTORY_ZIP_ENTRY_URL, "releases", getUri(artifact.artifact), StringUtils.prependIfMissing(path, "/")));
     }
 
+    /**
+     * Retrieves {@code index.jelly} from the plugin's {@code .jar} file (Artifactory extracts it, so only the entry is
+     * transferred) and the POM, and stores them as one record.
+     *
+     * If either cannot be retrieved for other reasons than not existing, the contents are returned without it, but not
+     * stored, so they're retried next time.
+     */
+    @Override
+    public HpiContents getHpiContents(MavenArtifact artifact) throws IOException {
+        final ArtifactCoordinates coordinates = artifact.artifact;
+        final String key = DigestUtils.sha256Hex(getUri(coordinates));
+        final File contentsFile = new File(new File(new File(cacheDirectory, "contents"), key.substring(0, 2)), key);
+        if (contentsFile.isFile()) {
+            try (InputStream is = Files.newInputStream(contentsFile.toPath())) {
+                return HpiContents.read(is);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read cached contents of " + artifact + ", retrieving them again", e);
+            }
+        }
+
+        boolean complete = true;
+        byte[] indexJelly = null;
+        final ArtifactCoordinates jar = new ArtifactCoordinates(coordinates.groupId, coordinates.artifactId, coordinates.version, "jar");
+        try {
+            indexJelly = fetchContent(String.format(ARTIFACTORY_ZIP_ENTRY_URL, "releases", getUri(jar), "/index.jelly"));
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Failed to retrieve index.jelly of " + artifact + ": " + e.getMessage());
+            complete = false;
+        }
+        byte[] pom = null;
+        final ArtifactCoordinates pomCoordinates = new ArtifactCoordinates(coordinates.groupId, coordinates.artifactId, coordinates.version, "pom");
+        final File localPom = new File(LOCAL_REPO, getUri(pomCoordinates));
+        try {
+            pom = localPom.isFile() ? Files.readAllBytes(localPom.toPath()) : fetchContent(String.format(ARTIFACTORY_FILE_URL, "releases", getUri(pomCoordinates)));
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, "Failed to retrieve POM of " + artifact + ": " + e.getMessage());
+            complete = false;
+        }
+
+        final HpiContents contents = new HpiContents(indexJelly, pom);
+        if (complete) {
+            final File parent = contentsFile.getParentFile();
+            if (!parent.mkdirs() && !parent.isDirectory()) {
+                throw new IOException("Failed to create cache directory " + parent);
+            }
+            final Path tmp = Files.createTempFile(parent.toPath(), contentsFile.getName(), ".tmp");
+            try {
+                Files.write(tmp, contents.toByteArray());
+                moveIntoPlace(tmp, contentsFile);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        }
+        return contents;
+    }
+
+    /**
+     * Retrieves the content of the specified URL without storing it in the cache, retrying server errors.
+     *
+     * @return the content, or {@code null} if it doesn't exist
+     */
+    @CheckForNull
+    private byte[] fetchContent(String url) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            final int code;
+            final byte[] content;
+            try (final Response response = SharedHttpClient.get().newCall(new Request.Builder().url(url).get().build()).execute()) {
+                code = response.code();
+                content = response.isSuccessful() ? HttpHelper.body(response).bytes() : null;
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e instanceof IOException ? (IOException) e : new IOException(e);
+                }
+                LOGGER.log(Level.INFO, "Failed to download " + url + " (attempt " + attempt + " of " + MAX_ATTEMPTS + "): " + e);
+                backOff(attempt);
+                continue;
+            }
+            if (content != null) {
+                return content;
+            }
+            if (Failure.isNotFound(code)) {
+                return null;
+            }
+            LOGGER.log(Level.INFO, "Received HTTP error response: " + code + " for URL: " + url);
+            if (code < 500 || attempt >= MAX_ATTEMPTS) {
+                throw new IOException("Failed to retrieve content of " + url + " (HTTP " + code + ")");
+            }
+            backOff(attempt);
+        }
+    }
+
     @Override
     public File resolve(ArtifactCoordinates artifact) throws IOException {
         /* Support loading files from local Maven repository to reduce redundancy */
@@ -322,5 +682,13 @@ public class ArtifactoryRepositoryImpl extends BaseMavenRepository {
         return getFile(String.format(ARTIFACTORY_FILE_URL, "releases", uri));
     }
 
+    @Override
+    public void logStatistics() {
+        final long hits = cache.getHits();
+        final long lookups = hits + cache.getMisses();
+        LOGGER.log(Level.INFO, String.format("Artifactory memory cache: %d entries, %d of %d bytes, %d%% of %d lookups hit, %d evictions",
+                cache.size(), cache.getBytes(), cache.getMaxBytes(), lookups == 0 ? 0 : hits * 100 / lookups, lookups, cache.getEvictions()));
+    }
+
     private static final File LOCAL_REPO = new File(new File(System.getProperty("user.home")), ".m2/repository");
 }
@@ -7,7 +7,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
@@ -44,7 +46,37 @@ public abstract class BaseMavenRepository implements MavenRepository {
         return IGNORE.getProperty(artifactId);
     }
 
-    public Collection<Plugin> listJenkinsPlugins() throws IOException {
+    /**
+     * Plugin catalog, built on first use and shared by all callers afterwards.
+     */
+    private Collection<Plugin> plugins;
+
+    /**
+     * Core releases, built on first use and copied for callers afterwards.
+     */
+    private TreeMap<VersionNumber, JenkinsWar> wars;
+
+    /**
+     * Returns the plugin catalog of this repository.
+     *
+     * <p>The catalog is only built once. Every {@link HPI} in it caches the metadata it loads (manifest, POM
+     * contents, description, etc.), so sharing the same instances across all generators means that metadata is
+     * retrieved at most once per process.</p>
+     *
+     * <p>Neither the returned collection nor the {@link Plugin}s in it can be modified. Wrappers need to use
+     * {@link Plugin#filter(java.util.function.Predicate)} to create views instead.</p>
+     *
+     * @return all plugins in this repository
+     * @throws IOException when an exception contacting the artifacts repository occurs
+     */
+    public synchronized Collection<Plugin> listJenkinsPlugins() throws IOException {
+        if (plugins == null) {
+            plugins = Collections.unmodifiableList(new ArrayList<>(buildPluginCatalog()));
+        }
+        return plugins;
+    }
+
+    private Collection<Plugin> buildPluginCatalog() throws IOException {
 
         Map<String, Plugin> plugins =
                 new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
@@ -87,12 +119,17 @@ public abstract class BaseMavenRepository implements MavenRepository {
 
     /**
      * Discover all hudson.war versions. Map must be sorted by version number, descending.
+     *
+     * The releases are only discovered once, callers receive a copy they are free to modify.
      */
-    public TreeMap<VersionNumber, JenkinsWar> getJenkinsWarsByVersionNumber() throws IOException {
-        TreeMap<VersionNumber, JenkinsWar> r = new TreeMap<>(VersionNumber.DESCENDING);
-        addWarsInGroupIdToMap(r, "org.jenkins-ci.main", null);
-        addWarsInGroupIdToMap(r, "org.jvnet.hudson.main", JenkinsWar.HUDSON_CUT_OFF);
-        return r;
+    public synchronized TreeMap<VersionNumber, JenkinsWar> getJenkinsWarsByVersionNumber() throws IOException {
+        if (wars == null) {
+            TreeMap<VersionNumber, JenkinsWar> r = new TreeMap<>(VersionKey.DESCENDING);
+            addWarsInGroupIdToMap(r, "org.jenkins-ci.main", null);
+            addWarsInGroupIdToMap(r, "org.jvnet.hudson.main", JenkinsWar.HUDSON_CUT_OFF);
+            wars = r;
+        }
+        return new TreeMap<>(wars);
     }
 
     protected abstract Set<ArtifactCoordinates> listAllJenkinsWars(String groupId) throws IOException;
@@ -108,10 +145,10 @@ public abstract class BaseMavenRepository implements MavenRepository {
                 LOGGER.log(Level.CONFIG, "Ignoring " + artifactCoordinates.artifactId + ", version " + artifactCoordinates.version + " because this version is suspended");
                 continue;
             }
-            if (cap != null && new VersionNumber(artifactCoordinates.version).compareTo(cap) > 0) continue;
+            final VersionKey version = VersionKey.of(artifactCoordinates.version);
+            if (cap != null && version.compareTo(VersionKey.of(cap)) > 0) continue;
 
-            VersionNumber version = new VersionNumber(artifactCoordinates.version);
-            releases.put(version, new JenkinsWar(this, artifactCoordinates));
+            releases.put(version.getVersionNumber(), new JenkinsWar(this, artifactCoordinates));
         }
     }
 }
@@ -23,4 +23,13 @@ public class DefaultMavenRepositoryBuilder {
         }
         return instance;
     }
+
+    /**
+     * Logs statistics of the repository, if it was used.
+     */
+    public static synchronized void logStatistics() {
+        if (instance != null) {
+            instance.logStatistics();
+        }
+    }
 }
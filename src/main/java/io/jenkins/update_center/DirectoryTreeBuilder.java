@@ -16,6 +16,7 @@ import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.NavigableMap;
 import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -61,7 +62,7 @@ public class DirectoryTreeBuilder {
                     latestLinks.add(plugin.getArtifactId() + ".hpi", plugin.getLatest().getDownloadUrl().getPath());
                 }
 
-                final TreeMap<VersionNumber, HPI> artifacts = plugin.getArtifacts();
+                final NavigableMap<VersionNumber, HPI> artifacts = plugin.getArtifacts();
 
                 if (download != null) {
                     for (HPI v : artifacts.values()) {
@@ -183,7 +184,7 @@ public class DirectoryTreeBuilder {
                             Collection<? extends MavenArtifact> versions, String permalink,
                             IndexTemplateProvider service) throws IOException {
         List<MavenArtifact> list = new ArrayList<>(versions);
-        list.sort(Comparator.comparing(MavenArtifact::getVersion).reversed());
+        list.sort(Comparator.comparing(MavenArtifact::getVersionKey).reversed());
 
         try (IndexHtmlBuilder index = service.newIndexHtmlBuilder(dir, title).withSubtitle(subtitle)) {
             index.add(permalink, "permalink to the latest");
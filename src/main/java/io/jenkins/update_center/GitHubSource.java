@@ -2,6 +2,7 @@ package io.jenkins.update_center;
 
 import io.jenkins.update_center.util.Environment;
 import io.jenkins.update_center.util.HttpHelper;
+import io.jenkins.update_center.util.SharedHttpClient;
 import net.sf.json.JSONObject;
 import okhttp3.Credentials;
 import okhttp3.MediaType;
@@ -58,7 +59,7 @@ public class GitHubSource {
         this.repoNames = new TreeSet<>(String::compareToIgnoreCase);
 
         LOGGER.log(Level.INFO, "Retrieving GitHub repo data...");
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        OkHttpClient.Builder builder = SharedHttpClient.get().newBuilder();
         if (GITHUB_API_USERNAME != null && GITHUB_API_PASSWORD != null) {
             builder.authenticator((route, response) -> {
                 String credential = Credentials.basic(GITHUB_API_USERNAME, GITHUB_API_PASSWORD);
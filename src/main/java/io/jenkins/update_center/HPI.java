@@ -25,15 +25,8 @@ package io.jenkins.update_center;
 
 import com.alibaba.fastjson.annotation.JSONField;
 import com.google.common.annotations.VisibleForTesting;
-import hudson.util.VersionNumber;
-import org.apache.commons.io.IOUtils;
+import io.jenkins.update_center.util.SingleFlight;
 import org.apache.commons.lang.StringUtils;
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.DocumentFactory;
-import org.dom4j.Element;
-import org.dom4j.Node;
-import org.dom4j.io.SAXReader;
 import org.owasp.html.HtmlPolicyBuilder;
 import org.owasp.html.HtmlSanitizer;
 import org.owasp.html.HtmlStreamEventProcessor;
@@ -41,9 +34,10 @@ import org.owasp.html.HtmlStreamEventReceiver;
 import org.owasp.html.HtmlStreamEventReceiverWrapper;
 import org.owasp.html.HtmlStreamRenderer;
 import org.owasp.html.Sanitizers;
-import org.xml.sax.SAXException;
 
+import javax.annotation.CheckForNull;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -54,9 +48,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -75,6 +71,9 @@ public class HPI extends MavenArtifact {
         this.plugin = plugin;
     }
 
+    /**
+     * @return the plugin this release belongs to in the unfiltered repository catalog, see {@link BaseMavenRepository#listJenkinsPlugins()}
+     */
     public Plugin getPlugin() {
         return plugin;
     }
@@ -107,7 +106,7 @@ public class HPI extends MavenArtifact {
     }
 
     public String getRequiredJenkinsVersion() throws IOException {
-        String v = getManifestAttributes().getValue("Jenkins-Version");
+        String v = getPluginManifestAttributes().getJenkinsVersion();
         if (v != null) {
             if (!isValidCoreDependency(v)) {
                 throw new IOException("Invalid Jenkins-Version in " + this + ": " + v);
@@ -115,13 +114,12 @@ public class HPI extends MavenArtifact {
             return v;
         }
 
-        v = getManifestAttributes().getValue("Hudson-Version");
+        v = getPluginManifestAttributes().getHudsonVersion();
         if (fixNull(v) != null) {
             if (!isValidCoreDependency(v)) {
                 throw new IOException("Invalid Hudson-Version in " + this + ": " + v);
             }
-            VersionNumber n = new VersionNumber(v);
-            if (n.compareTo(JenkinsWar.HUDSON_CUT_OFF)<=0)
+            if (VersionKey.of(v).compareTo(VersionKey.of(JenkinsWar.HUDSON_CUT_OFF))<=0)
                 return v;   // Hudson <= 1.395 is treated as Jenkins
             // TODO: Jenkins-Version started appearing from Jenkins 1.401 POM.
             // so maybe Hudson > 1.400 shouldn't be considered as a Jenkins plugin?
@@ -132,6 +130,22 @@ public class HPI extends MavenArtifact {
         return "1.398";
     }
 
+    private VersionKey requiredJenkinsVersionKey;
+
+    /**
+     * Like {@link #getRequiredJenkinsVersion()}, but parsed, and remembered so repeated filtering by core dependency,
+     * e.g. for each tier or capped update site, doesn't parse it again.
+     *
+     * @return the required Jenkins version
+     * @throws IOException if the required Jenkins version cannot be determined or is invalid
+     */
+    public synchronized VersionKey getRequiredJenkinsVersionKey() throws IOException {
+        if (requiredJenkinsVersionKey == null) {
+            requiredJenkinsVersionKey = VersionKey.of(getRequiredJenkinsVersion());
+        }
+        return requiredJenkinsVersionKey;
+    }
+
     /**
      * Earlier versions of the maven-hpi-plugin put "null" string literal, so we need to treat it as real null.
      */
@@ -141,17 +155,34 @@ public class HPI extends MavenArtifact {
     }
 
     public String getCompatibleSinceVersion() throws IOException {
-        return getManifestAttributes().getValue("Compatible-Since-Version");
+        return getPluginManifestAttributes().getCompatibleSinceVersion();
     }
 
     public List<Dependency> getDependencies() throws IOException {
-        String deps = getManifestAttributes().getValue("Plugin-Dependencies");
-        if(deps==null)  return Collections.emptyList();
+        return new ArrayList<>(getPluginManifestAttributes().getDependencies());
+    }
 
-        List<Dependency> r = new ArrayList<>();
-        for(String token : deps.split(","))
-            r.add(new Dependency(token));
-        return r;
+    private ManifestAttributes pluginManifestAttributes;
+
+    /**
+     * Returns the manifest attributes used to describe this release.
+     *
+     * These are stored by checksum in {@link ManifestAttributesStore}, so the manifest is only retrieved if they're unknown.
+     */
+    synchronized ManifestAttributes getPluginManifestAttributes() throws IOException {
+        if (pluginManifestAttributes == null) {
+            final MavenRepository.ArtifactMetadata metadata = getMetadata();
+            final String sha256 = metadata == null ? null : metadata.sha256;
+            ManifestAttributes attributes = sha256 == null ? null : ManifestAttributesStore.getInstance().get(sha256);
+            if (attributes == null) {
+                attributes = ManifestAttributes.from(getManifestAttributes());
+                if (sha256 != null) {
+                    ManifestAttributesStore.getInstance().put(sha256, attributes);
+                }
+            }
+            pluginManifestAttributes = attributes;
+        }
+        return pluginManifestAttributes;
     }
 
     private String plainText2html(String plainText) {
@@ -179,20 +210,36 @@ public class HPI extends MavenArtifact {
         }
     }
 
+    private HpiContents contents;
+
+    /**
+     * The manifest isn't part of these, see {@link #getManifest()}, so code that just needs the manifest doesn't need to
+     * retrieve the other files.
+     *
+     * @return index.jelly and the POM of this release, retrieved together
+     * @throws IOException if an error occurs while accessing plugin metadata
+     */
+    private synchronized HpiContents getContents() throws IOException {
+        if (contents == null) {
+            contents = repository.getHpiContents(this);
+        }
+        return contents;
+    }
+
     private String description;
 
-    public String getDescription() throws IOException {
+    public synchronized String getDescription() throws IOException {
         if (description == null) {
-            String description = plainText2html(readSingleValueFromXmlFile(resolvePOM(), "/project/description"));
+            String description = plainText2html(getPomFields().getDescription());
 
-            ArtifactCoordinates coordinates = new ArtifactCoordinates(artifact.groupId, artifact.artifactId, artifact.version, "jar");
-            try (InputStream is = repository.getZipFileEntry(new MavenArtifact(repository, coordinates), "index.jelly")) {
+            final byte[] indexJelly = getContents().getIndexJelly();
+            if (indexJelly != null) {
                 StringBuilder b = new StringBuilder();
                 HtmlStreamRenderer renderer = HtmlStreamRenderer.create(b, Throwable::printStackTrace, html -> LOGGER.log(Level.INFO, "Bad HTML: '" + html + "' in " + artifact.getGav()));
-                HtmlSanitizer.sanitize(IOUtils.toString(is, StandardCharsets.UTF_8), HTML_POLICY.apply(renderer), PRE_PROCESSOR);
+                HtmlSanitizer.sanitize(new String(indexJelly, StandardCharsets.UTF_8), HTML_POLICY.apply(renderer), PRE_PROCESSOR);
                 description = b.toString().trim().replaceAll("\\s+", " ");
-            } catch (IOException e) {
-                LOGGER.log(Level.FINE, () -> "Failed to read description from index.jelly: " + e.getMessage());
+            } else {
+                LOGGER.log(Level.FINE, () -> "No index.jelly in " + artifact.getGav());
             }
             if (isAlphaOrBeta()) {
                 description = "<b>(This version is experimental and may change in backward-incompatible ways)</b><br><br>" + description;
@@ -231,9 +278,9 @@ public class HPI extends MavenArtifact {
      * @return The plugin name defined in the POM &lt;name&gt; modified by simplification rules (no 'Jenkins', no 'Plugin'); then artifact ID.
      * @throws IOException if an exception occurs while accessing metadata
      */
-    public String getName() throws IOException {
+    public synchronized String getName() throws IOException {
         if (name == null) {
-            String title = readSingleValueFromXmlFile(resolvePOM(), "/project/name");
+            String title = getPomFields().getName();
             if (title == null || "".equals(title)) {
                 title = artifact.artifactId;
             } else {
@@ -256,63 +303,86 @@ public class HPI extends MavenArtifact {
         return name;
     }
 
-    private String readSingleValueFromXmlFile(File file, String xpath) {
-        try {
-            XmlCache.CachedValue cached = XmlCache.readCache(file, xpath);
-            if (cached == null) {
-                Document doc = xmlReader.read(file);
-                Node node = selectSingleNode(doc, xpath);
-                String ret = node != null ? ((Element) node).getTextTrim() : null;
-                XmlCache.writeCache(file, xpath, ret);
-                return ret;
-            } else {
-                return cached.value;
-            }
-        } catch (DocumentException e) {
+    /**
+     * Returns the values read from the parent POM, if any.
+     *
+     * Many plugins share the same parent POM, so its values are only read once per process, see {@link #PARENT_POM_FIELDS}.
+     */
+    @CheckForNull
+    private PomFields getParentPomFields() throws IOException {
+        final ArtifactCoordinates parent = getPomFields().getParent();
+        if (parent == null) {
             return null;
         }
+        final PomFields cached = PARENT_POM_FIELDS.get(parent.getGav());
+        if (cached != null) {
+            return cached;
+        }
+        return PARENT_POM_LOADS.load(parent.getGav(), () -> {
+            PomFields fields = PARENT_POM_FIELDS.get(parent.getGav());
+            if (fields == null) {
+                // not computeIfAbsent, as that would block unrelated updates of the map while downloading
+                try {
+                    fields = readParentPOM(parent);
+                } catch (IOException e) {
+                    // Not remembered, so later calls retry
+                    LOGGER.log(Level.WARNING, "Failed to read parent POM " + parent.getGav() + " of " + artifact.getGav() + ": " + e.getMessage());
+                    return PomFields.EMPTY;
+                }
+                PARENT_POM_FIELDS.put(parent.getGav(), fields);
+            }
+            return fields;
+        });
     }
 
-    private static Node selectSingleNode(Document pom, String path) {
-        Node result = pom.selectSingleNode(path);
-        if (result == null)
-            result = pom.selectSingleNode(path.replaceAll("/", "/m:"));
-        return result;
+    /**
+     * Reads the parent POM. A parent POM that doesn't exist or cannot be parsed has no values.
+     *
+     * @throws IOException if the parent POM could not be retrieved for other reasons than not existing
+     */
+    private PomFields readParentPOM(ArtifactCoordinates parent) throws IOException {
+        File file;
+        try {
+            file = repository.resolve(parent);
+        } catch (FileNotFoundException e) {
+            file = null;
+        }
+        if (file == null) {
+            LOGGER.log(Level.WARNING, "Parent POM " + parent.getGav() + " of " + artifact.getGav() + " not found");
+            return PomFields.EMPTY;
+        }
+        final byte[] pom = Files.readAllBytes(file.toPath());
+        try {
+            return PomFieldsCache.getInstance().get(parent.getGav(), pom);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to parse parent POM " + parent.getGav() + " of " + artifact.getGav(), e);
+            return PomFields.EMPTY;
+        }
     }
 
-    private Document getPom() throws IOException {
-        if (pom == null) {
-            pom = readPOM();
+    private synchronized PomFields getPomFields() throws IOException {
+        if (pomFields == null) {
+            pomFields = readPOM();
         }
-        return pom;
+        return pomFields;
     }
 
     /**
-     * POM parsed as a DOM.
+     * The values read from the POM.
      */
-    private Document pom;
+    private PomFields pomFields;
 
-    private static SAXReader createXmlReader() {
-        DocumentFactory factory = new DocumentFactory();
-        factory.setXPathNamespaceURIs(
-                Collections.singletonMap("m", "http://maven.apache.org/POM/4.0.0"));
-        final SAXReader reader = new SAXReader(factory);
-        try {
-            reader.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            reader.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            reader.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-        } catch (SAXException ex) {
-            LOGGER.log(Level.WARNING, "Failed to set safety features on SAXReader", ex);
+    private PomFields readPOM() throws IOException {
+        final byte[] pom = getContents().getPom();
+        if (pom == null) {
+            LOGGER.log(Level.INFO, "No POM for " + artifact.getGav());
+            return PomFields.EMPTY;
         }
-        return reader;
-    }
-
-    private Document readPOM() throws IOException {
         try {
-            return xmlReader.read(resolvePOM());
-        } catch (DocumentException e) {
+            return PomFieldsCache.getInstance().get(artifact.getGav(), pom);
+        } catch (IOException e) {
             LOGGER.log(Level.INFO, "Failed to parse POM for " + artifact.getGav(), e);
-            return null;
+            return PomFields.EMPTY;
         }
     }
 
@@ -322,19 +392,19 @@ public class HPI extends MavenArtifact {
      * @return The URL as specified in the POM, or the overrides file.
      * @throws IOException if an error occurs while accessing plugin metadata
      */
-    public String getPluginUrl() throws IOException {
+    public synchronized String getPluginUrl() throws IOException {
         if (pluginUrl == null) {
             // Check whether the plugin documentation URL should be overridden
             String url = URL_OVERRIDES.getProperty(artifact.artifactId);
 
             // Otherwise read *.hpi!/META-INF/MANIFEST.MF#Url, if defined
             if (url == null) {
-                url = getManifestAttributes().getValue("Url");
+                url = getPluginManifestAttributes().getUrl();
             }
 
             // Otherwise read the plugin URL from the POM, if any
             if (url == null) {
-                url = readSingleValueFromXmlFile(resolvePOM(), "/project/url");
+                url = getPomFields().getUrl();
             }
             // last fallback: GitHub URL; also prevent plugins.j.io referencing itself
             if (url == null || url.startsWith("https://plugins.jenkins.io")) {
@@ -401,24 +471,16 @@ public class HPI extends MavenArtifact {
 
     private String _getScmUrl() {
         try {
-            String scm = readSingleValueFromXmlFile(resolvePOM(), "/project/scm/url");
+            String scm = getPomFields().getScmUrl();
             // Try parent pom
             if (scm == null) {
                 LOGGER.log(Level.FINER, "No SCM URL found in POM for " + this.artifact.getGav());
-                Element parent = (Element) selectSingleNode(getPom(), "/project/parent");
+                PomFields parent = getParentPomFields();
                 if (parent != null) {
-                    try {
-                        File parentPomFile = repository.resolve(
-                                new ArtifactCoordinates(parent.element("groupId").getTextTrim(),
-                                        parent.element("artifactId").getTextTrim(),
-                                        parent.element("version").getTextTrim(), "pom"));
-                        scm = readSingleValueFromXmlFile(parentPomFile, "/project/scm/url");
-                        if (scm == null) {
-                            LOGGER.log(Level.FINER, "No SCM URL found in parent POM for " + this.artifact.getGav());
-                            // grandparent is pointless, no additional hits
-                        }
-                    } catch (Exception ex) {
-                        LOGGER.log(Level.WARNING, "Failed to read parent POM for " + this.artifact.getGav(), ex);
+                    scm = parent.getScmUrl();
+                    if (scm == null) {
+                        LOGGER.log(Level.FINER, "No SCM URL found in parent POM for " + this.artifact.getGav());
+                        // grandparent is pointless, no additional hits
                     }
                 }
             }
@@ -438,23 +500,15 @@ public class HPI extends MavenArtifact {
 
     private String getScmUrlFromDeveloperConnection() {
         try {
-            String scm = readSingleValueFromXmlFile(resolvePOM(), "/project/scm/developerConnection");
+            String scm = getPomFields().getScmDeveloperConnection();
             // Try parent pom
             if (scm == null) {
                 LOGGER.log(Level.FINE, "No SCM developerConnection found in POM for " + this.artifact.getGav());
-                Element parent = (Element) selectSingleNode(getPom(), "/project/parent");
+                PomFields parent = getParentPomFields();
                 if (parent != null) {
-                    try {
-                        File parentPomFile = repository.resolve(
-                                new ArtifactCoordinates(parent.element("groupId").getTextTrim(),
-                                        parent.element("artifactId").getTextTrim(),
-                                        parent.element("version").getTextTrim(), "pom"));
-                        scm = readSingleValueFromXmlFile(parentPomFile, "/project/scm/developerConnection");
-                        if (scm == null) {
-                            LOGGER.log(Level.FINE, "No SCM developerConnection found in parent POM for " + this.artifact.getGav());
-                        }
-                    } catch (Exception ex) {
-                        LOGGER.log(Level.WARNING, "Failed to read parent POM for " + this.artifact.getGav(), ex);
+                    scm = parent.getScmDeveloperConnection();
+                    if (scm == null) {
+                        LOGGER.log(Level.FINE, "No SCM developerConnection found in parent POM for " + this.artifact.getGav());
                     }
                 }
             }
@@ -518,10 +572,10 @@ public class HPI extends MavenArtifact {
      * @return a string representing a user-accessible SCM URL, like https://github.com/org/repo, or {code null} if the repo wasn't found or is considered invalid.
      * @throws IOException if an error occurs while accessing plugin metadata or GitHub
      */
-    public String getScmUrl() throws IOException {
+    public synchronized String getScmUrl() throws IOException {
         if (!scmUrlCached) {
             scmUrlCached = true;
-            if (resolvePOM().exists()) {
+            if (getContents().getPom() != null) {
                 String scm = _getScmUrl();
                 if (scm == null) {
                     scm = getScmUrlFromDeveloperConnection();
@@ -599,7 +653,16 @@ public class HPI extends MavenArtifact {
         return labels.split("\\s+");
     }
 
-    private static final SAXReader xmlReader = createXmlReader();
-
     private static final Logger LOGGER = Logger.getLogger(HPI.class.getName());
+
+    /**
+     * Values read from parent POMs, keyed by the parent's GAV. Releases are immutable, so these can be shared by all
+     * plugin releases using the same parent.
+     */
+    private static final Map<String, PomFields> PARENT_POM_FIELDS = new ConcurrentHashMap<>();
+
+    /**
+     * Avoids resolving the same parent POM concurrently when many plugins are processed in parallel.
+     */
+    private static final SingleFlight<String, PomFields> PARENT_POM_LOADS = new SingleFlight<>();
 }
@@ -0,0 +1,90 @@
+package io.jenkins.update_center;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The files of a plugin release that are needed to describe it, other than the manifest: {@code index.jelly} from the
+ * plugin's classes, and the POM. The manifest is retrieved on its own (see {@link MavenArtifact#getManifest()}), as most
+ * uses only need the manifest.
+ *
+ * These can be stored together as one record, see {@link #toByteArray()} and {@link #read(InputStream)}.
+ *
+ * @see MavenRepository#getHpiContents(MavenArtifact)
+ */
+public final class HpiContents {
+    private static final int FORMAT_VERSION = 2;
+
+    private final byte[] indexJelly;
+    private final byte[] pom;
+
+    /**
+     * @param indexJelly the content of {@code index.jelly}, if the plugin has one
+     * @param pom the content of the POM, if it exists
+     */
+    public HpiContents(@CheckForNull byte[] indexJelly, @CheckForNull byte[] pom) {
+        this.indexJelly = indexJelly;
+        this.pom = pom;
+    }
+
+    @CheckForNull
+    public byte[] getIndexJelly() {
+        return indexJelly;
+    }
+
+    @CheckForNull
+    public byte[] getPom() {
+        return pom;
+    }
+
+    @Nonnull
+    public byte[] toByteArray() throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(baos)) {
+            out.writeInt(FORMAT_VERSION);
+            writeBytes(out, indexJelly);
+            writeBytes(out, pom);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * Reads a record written by {@link #toByteArray()}.
+     *
+     * @throws IOException if the record cannot be read or was written in an unsupported format
+     */
+    @Nonnull
+    public static HpiContents read(@Nonnull InputStream is) throws IOException {
+        final DataInputStream in = new DataInputStream(is);
+        final int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported format " + version);
+        }
+        return new HpiContents(readBytes(in), readBytes(in));
+    }
+
+    private static void writeBytes(DataOutputStream out, @CheckForNull byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    @CheckForNull
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
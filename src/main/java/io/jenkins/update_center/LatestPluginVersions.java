@@ -57,6 +57,16 @@ public class LatestPluginVersions {
         instance = new LatestPluginVersions(repository);
     }
 
+    @Nonnull
+    public static LatestPluginVersions create(@Nonnull MavenRepository repository) throws IOException {
+        return new LatestPluginVersions(repository);
+    }
+
+    @Nonnull
+    public static LatestPluginVersions createEmpty() {
+        return new LatestPluginVersions(Collections.emptyMap());
+    }
+
     public static void initializeEmpty() {
         instance = new LatestPluginVersions(Collections.emptyMap());
     }
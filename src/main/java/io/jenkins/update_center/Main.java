@@ -34,14 +34,17 @@ import io.jenkins.update_center.json.RecentReleasesRoot;
 import io.jenkins.update_center.json.TieredUpdateSitesGenerator;
 import io.jenkins.update_center.json.PluginDocumentationUrlsRoot;
 import io.jenkins.update_center.wrappers.AlphaBetaOnlyRepository;
+import io.jenkins.update_center.wrappers.CachingMavenRepository;
 import io.jenkins.update_center.wrappers.StableWarMavenRepository;
 import io.jenkins.update_center.wrappers.VersionCappedMavenRepository;
 import org.apache.commons.io.IOUtils;
 import io.jenkins.update_center.json.PluginVersionsRoot;
+import io.jenkins.update_center.json.SignedJson;
 import io.jenkins.update_center.json.ReleaseHistoryRoot;
 import io.jenkins.update_center.json.UpdateCenterRoot;
 import io.jenkins.update_center.wrappers.TruncatedMavenRepository;
 import io.jenkins.update_center.wrappers.AllowedArtifactsListMavenRepository;
+import io.jenkins.update_center.util.SharedHttpClient;
 import org.kohsuke.args4j.ClassParser;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
@@ -50,20 +53,26 @@ import org.kohsuke.args4j.Option;
 import javax.annotation.CheckForNull;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 public class Main {
     /* Control meta-execution options */
@@ -79,6 +88,10 @@ public class Main {
     @SuppressFBWarnings
     @CheckForNull public static Level level = Level.INFO;
 
+    @Option(name = "--parallel-executions", usage = "The number of update sites from the arguments file to generate at the same time. This argument cannot be re-set via arguments-file.")
+    @SuppressFBWarnings
+    public static int parallelExecutions = 1;
+
 
     /* Configure repository source */
     @Option(name = "--limit-plugin-core-dependency", usage = "Cap the core dependency and only include plugins that are compatible with this core (or older)")
@@ -149,6 +162,27 @@ public class Main {
     private Signer signer = new Signer();
     private MetadataWriter metadataWriter = new MetadataWriter();
     private DirectoryTreeBuilder directoryTreeBuilder = new DirectoryTreeBuilder();
+    private MetadataPrefetcher metadataPrefetcher = new MetadataPrefetcher();
+
+    /* Reused across invocations from the arguments file */
+    private final Map<String, MavenRepository> sharedRepositories;
+    private final Map<MavenRepository, LatestPluginVersions> latestPluginVersions;
+
+    /* Only set for invocations from the arguments file */
+    private final String invocationArgs;
+    private final List<Future<?>> directoryTreeDependencies = new ArrayList<>();
+
+    public Main() {
+        this.sharedRepositories = new HashMap<>();
+        this.latestPluginVersions = new HashMap<>();
+        this.invocationArgs = null;
+    }
+
+    private Main(Main parent, String invocationArgs) {
+        this.sharedRepositories = parent.sharedRepositories;
+        this.latestPluginVersions = parent.latestPluginVersions;
+        this.invocationArgs = invocationArgs;
+    }
 
 
     public static void main(String[] args) throws Exception {
@@ -170,35 +204,35 @@ public class Main {
     }
 
     public int run(String[] args) throws Exception {
-        CmdLineParser p = new CmdLineParser(this);
-        new ClassParser().parse(signer, p);
-        new ClassParser().parse(metadataWriter, p);
-        new ClassParser().parse(directoryTreeBuilder, p);
+        CmdLineParser p = createParser(this);
         try {
             p.parseArgument(args);
 
             if (argumentsFile == null) {
                 run();
             } else {
-                List<String> invocations = IOUtils.readLines(Files.newBufferedReader(argumentsFile.toPath(), StandardCharsets.UTF_8));
-                int executions = 0;
-                for (String line : invocations) {
+                List<String> lines = IOUtils.readLines(Files.newBufferedReader(argumentsFile.toPath(), StandardCharsets.UTF_8));
+                List<Main> invocations = new ArrayList<>();
+                for (String line : lines) {
                     if (!line.trim().startsWith("#") && !line.trim().isEmpty()) { // TODO more flexible comments support, e.g. end-of-line
 
-                        LOGGER.log(Level.INFO, "Running with args: " + line);
                         // TODO combine args array and this list
                         String[] invocationArgs = line.trim().split(" +");
 
-                        resetArguments(this, signer, metadataWriter, directoryTreeBuilder);
-
+                        Main invocation = new Main(this, line);
+                        p = createParser(invocation);
                         p.parseArgument(invocationArgs);
-                        run();
-                        executions++;
+                        invocations.add(invocation);
                     }
                 }
-                LOGGER.log(Level.INFO, "Finished " + executions + " executions found in parameters file " + argumentsFile);
+                runInvocations(invocations);
+                LOGGER.log(Level.INFO, "Finished " + invocations.size() + " executions found in parameters file " + argumentsFile);
             }
 
+            PomFieldsCache.save();
+            ManifestAttributesStore.save();
+            SharedHttpClient.logStatistics();
+            DefaultMavenRepositoryBuilder.logStatistics();
             return 0;
         } catch (CmdLineException e) {
             LOGGER.log(Level.SEVERE, e.getMessage());
@@ -207,36 +241,101 @@ public class Main {
         }
     }
 
-    private void resetArguments(Object... optionHolders) {
-        for (Object o : optionHolders) {
-            for (Field field : o.getClass().getFields()) {
-                if (field.getAnnotation(Option.class) != null && !Modifier.isStatic(field.getModifiers())) {
-                    if (Object.class.isAssignableFrom(field.getType())) {
-                        try {
-                            if (field.getAnnotation(Default.class) != null) {
-                                field.set(o, field.getAnnotation(Default.class).value());
-                            } else {
-                                field.set(o, null);
-                            }
-                        } catch (IllegalAccessException e) {
-                            LOGGER.log(Level.WARNING, "Failed to reset argument", e);
-                        }
-                    } else if (boolean.class.isAssignableFrom(field.getType())) {
-                        try {
-                            if (field.getAnnotation(Default.class) != null) {
-                                field.set(o, Boolean.parseBoolean(field.getAnnotation(Default.class).value()));
-                            } else {
-                                field.set(o, false);
-                            }
-                        } catch (IllegalAccessException e) {
-                            LOGGER.log(Level.WARNING, "Failed to reset boolean option", e);
-                        }
+    private static CmdLineParser createParser(Main main) {
+        CmdLineParser p = new CmdLineParser(main);
+        new ClassParser().parse(main.signer, p);
+        new ClassParser().parse(main.metadataWriter, p);
+        new ClassParser().parse(main.directoryTreeBuilder, p);
+        new ClassParser().parse(main.metadataPrefetcher, p);
+        return p;
+    }
+
+    /**
+     * Runs the specified invocations from the arguments file, up to {@link #parallelExecutions} at the same time.
+     *
+     * Invocations writing to the same directories are ordered as they appear in the arguments file:
+     * If the output directories overlap, an invocation starts only once earlier ones are done.
+     * If only the directories written by {@link DirectoryTreeBuilder} overlap (e.g. the same {@code --downloads-directory}),
+     * only that final step waits for the earlier invocations, so that later invocations still override their
+     * {@code latest} links.
+     */
+    private static void runInvocations(List<Main> invocations) throws Exception {
+        if (parallelExecutions < 1) {
+            throw new IllegalArgumentException("--parallel-executions must be at least 1");
+        }
+        // Tasks only ever wait for tasks submitted earlier, which are already running or done, so this cannot deadlock
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelExecutions);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < invocations.size(); i++) {
+                final Main invocation = invocations.get(i);
+                final List<Future<?>> startDependencies = new ArrayList<>();
+                for (int j = 0; j < i; j++) {
+                    final Main earlier = invocations.get(j);
+                    if (overlaps(invocation.getOutputDirectories(), earlier.getOutputDirectories())
+                            || overlaps(invocation.getOutputDirectories(), earlier.getDirectoryTreeDirectories())
+                            || overlaps(invocation.getDirectoryTreeDirectories(), earlier.getOutputDirectories())) {
+                        startDependencies.add(futures.get(j));
+                    } else if (overlaps(invocation.getDirectoryTreeDirectories(), earlier.getDirectoryTreeDirectories())) {
+                        invocation.directoryTreeDependencies.add(futures.get(j));
+                    }
+                }
+                futures.add(executor.submit(() -> {
+                    awaitAll(startDependencies);
+                    LOGGER.log(Level.INFO, "Running with args: " + invocation.invocationArgs);
+                    invocation.run();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    final Throwable cause = ex.getCause();
+                    if (cause instanceof Exception) {
+                        throw (Exception) cause;
                     }
+                    throw ex;
                 }
             }
+        } finally {
+            executor.shutdownNow();
         }
     }
 
+    private static void awaitAll(List<Future<?>> futures) throws Exception {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                throw new IOException("Skipping execution because an earlier one writing to the same directories failed", ex.getCause());
+            }
+        }
+    }
+
+    private static boolean overlaps(List<Path> a, List<Path> b) {
+        for (Path x : a) {
+            for (Path y : b) {
+                if (x.startsWith(y) || y.startsWith(x)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private List<Path> getOutputDirectories() {
+        return toPaths(www, tierListFile);
+    }
+
+    private List<Path> getDirectoryTreeDirectories() {
+        return toPaths(directoryTreeBuilder.latest, directoryTreeBuilder.download, directoryTreeBuilder.wwwDownload);
+    }
+
+    private static List<Path> toPaths(File... files) {
+        return Arrays.stream(files).filter(Objects::nonNull).map(f -> f.getAbsoluteFile().toPath().normalize()).collect(Collectors.toList());
+    }
+
     public void run() throws Exception {
 
         if (level != null) {
@@ -244,20 +343,28 @@ public class Main {
         }
 
         MavenRepository repo = createRepository();
-        initializeLatestPluginVersions(skipLatestPluginRelease);
+        final LatestPluginVersions latestPluginVersions = getLatestPluginVersions(skipLatestPluginRelease);
 
         if (tierListFile != null) {
+            metadataPrefetcher.prefetch(repo, false, true);
             new TieredUpdateSitesGenerator().withRepository(repo).write(tierListFile, prettyPrint);
             return;
         }
 
+        if (capPlugin != null) {
+            // Index core dependencies in parallel, rather than determining them one release at a time while capping
+            metadataPrefetcher.prefetchRequiredCores(getSharedRepository());
+        }
+        metadataPrefetcher.prefetch(repo, !skipUpdateCenter || generatePluginDocumentationUrls, generatePluginVersions);
+
         metadataWriter.writeMetadataFiles(repo, www);
 
         if (!skipUpdateCenter) {
-            final String signedUpdateCenterJson = new UpdateCenterRoot(id, connectionCheckUrl, repo, new File(Main.resourcesDir, WARNINGS_JSON_FILENAME)).encodeWithSignature(signer, prettyPrint);
-            writeToFile(updateCenterPostCallJson(signedUpdateCenterJson), new File(www, UPDATE_CENTER_JSON_FILENAME));
-            writeToFile(signedUpdateCenterJson, new File(www, UPDATE_CENTER_ACTUAL_JSON_FILENAME));
-            writeToFile(updateCenterPostMessageHtml(signedUpdateCenterJson), new File(www, UPDATE_CENTER_JSON_HTML_FILENAME));
+            final SignedJson signedUpdateCenterJson = new UpdateCenterRoot(id, connectionCheckUrl, repo, new File(Main.resourcesDir, WARNINGS_JSON_FILENAME), latestPluginVersions).encodeSigned(signer, prettyPrint);
+            // All three files are written from the same serialized JSON
+            signedUpdateCenterJson.writeTo(new File(www, UPDATE_CENTER_JSON_FILENAME), UPDATE_CENTER_POST_CALL_PREFIX, UPDATE_CENTER_POST_CALL_SUFFIX);
+            signedUpdateCenterJson.writeTo(new File(www, UPDATE_CENTER_ACTUAL_JSON_FILENAME), null, null);
+            signedUpdateCenterJson.writeTo(new File(www, UPDATE_CENTER_JSON_HTML_FILENAME), UPDATE_CENTER_POST_MESSAGE_PREFIX, UPDATE_CENTER_POST_MESSAGE_SUFFIX);
         }
 
         if (generatePluginDocumentationUrls) {
@@ -280,33 +387,45 @@ public class Main {
             new PlatformPluginsRoot(new File(Main.resourcesDir, PLATFORM_PLUGINS_RESOURCE_FILENAME)).writeWithSignature(new File(www, PLATFORM_PLUGINS_JSON_FILENAME), signer, prettyPrint);
         }
 
+        awaitAll(directoryTreeDependencies);
         directoryTreeBuilder.build(repo);
     }
 
-    private String updateCenterPostCallJson(String updateCenterJson) {
-        return "updateCenter.post(" + EOL + updateCenterJson + EOL + ");";
-    }
-
-    private String updateCenterPostMessageHtml(String updateCenterJson) {
-        // needs the DOCTYPE to make JSON.stringify work on IE8
-        return "\uFEFF<!DOCTYPE html><html><head><meta http-equiv='Content-Type' content='text/html;charset=UTF-8' /></head><body><script>window.onload = function () { window.parent.postMessage(JSON.stringify(" + EOL + updateCenterJson+ EOL + "),'*'); };</script></body></html>";
+    private LatestPluginVersions getLatestPluginVersions(boolean skip) throws IOException {
+        if (skip) {
+            return LatestPluginVersions.createEmpty();
+        }
+        final MavenRepository repo = getSharedRepository();
+        synchronized (latestPluginVersions) {
+            LatestPluginVersions instance = latestPluginVersions.get(repo);
+            if (instance == null) {
+                instance = LatestPluginVersions.create(repo);
+                latestPluginVersions.put(repo, instance);
+            }
+            return instance;
+        }
     }
 
-    private static void writeToFile(String string, final File file) throws IOException {
-        File parentFile = file.getParentFile();
-        if (parentFile != null && !parentFile.isDirectory() && !parentFile.mkdirs()) {
-            throw new IOException("Failed to create parent directory " + parentFile);
+    /**
+     * Returns the repository with the options applied that don't differ between tiers of the same update site.
+     * When running with {@code --arguments-file}, the same instance is returned for all invocations with the same
+     * options, so the filtered plugin lists and the metadata of their releases are only determined once.
+     *
+     * @return the shared repository
+     */
+    private MavenRepository getSharedRepository() throws IOException {
+        final String key = allowedArtifactsListFile + ":" + maxPlugins + ":" + onlyExperimental + ":" + includeExperimental;
+        synchronized (sharedRepositories) {
+            MavenRepository repo = sharedRepositories.get(key);
+            if (repo == null) {
+                repo = createSharedRepository();
+                sharedRepositories.put(key, repo);
+            }
+            return repo;
         }
-        PrintWriter rhpw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
-        rhpw.print(string);
-        rhpw.close();
     }
 
-    private void initializeLatestPluginVersions(boolean skip) throws IOException {
-        if (skip) {
-            LatestPluginVersions.initializeEmpty();
-            return;
-        }
+    private MavenRepository createSharedRepository() throws IOException {
         MavenRepository repo = DefaultMavenRepositoryBuilder.getInstance();
         if (allowedArtifactsListFile != null) {
             final Properties properties = new Properties();
@@ -324,27 +443,14 @@ public class Main {
         if (!includeExperimental) {
             repo = new AlphaBetaOnlyRepository(true).withBaseRepository(repo);
         }
-        LatestPluginVersions.initialize(repo);
+        return new CachingMavenRepository().withBaseRepository(repo);
     }
 
     private MavenRepository createRepository() throws Exception {
 
-        MavenRepository repo = DefaultMavenRepositoryBuilder.getInstance();
-        if (allowedArtifactsListFile != null) {
-            final Properties properties = new Properties();
-            try (FileInputStream fis = new FileInputStream(allowedArtifactsListFile)) {
-                properties.load(fis);
-            }
-            repo = new AllowedArtifactsListMavenRepository(properties).withBaseRepository(repo);
-        }
-        if (maxPlugins != null) {
-            repo = new TruncatedMavenRepository(maxPlugins).withBaseRepository(repo);
-        }
-        if (onlyExperimental) {
-            repo = new AlphaBetaOnlyRepository(false).withBaseRepository(repo);
-        }
-        if (!includeExperimental) {
-            repo = new AlphaBetaOnlyRepository(true).withBaseRepository(repo);
+        MavenRepository repo = getSharedRepository();
+        if (!stableCore && capCore == null && capPlugin == null) {
+            return repo;
         }
         if (stableCore) {
             repo = new StableWarMavenRepository().withBaseRepository(repo);
@@ -354,7 +460,7 @@ public class Main {
             VersionNumber vc = capCore == null ? null : new VersionNumber(capCore);
             repo = new VersionCappedMavenRepository(vp, vc).withBaseRepository(repo);
         }
-        return repo;
+        return new CachingMavenRepository().withBaseRepository(repo);
     }
 
     private static final String WARNINGS_JSON_FILENAME = "warnings.json";
@@ -369,6 +475,13 @@ public class Main {
     private static final String PLATFORM_PLUGINS_RESOURCE_FILENAME = "platform-plugins.json";
     private static final String EOL = System.getProperty("line.separator");
 
+    private static final String UPDATE_CENTER_POST_CALL_PREFIX = "updateCenter.post(" + EOL;
+    private static final String UPDATE_CENTER_POST_CALL_SUFFIX = EOL + ");";
+
+    // needs the DOCTYPE to make JSON.stringify work on IE8
+    private static final String UPDATE_CENTER_POST_MESSAGE_PREFIX = "\uFEFF<!DOCTYPE html><html><head><meta http-equiv='Content-Type' content='text/html;charset=UTF-8' /></head><body><script>window.onload = function () { window.parent.postMessage(JSON.stringify(" + EOL;
+    private static final String UPDATE_CENTER_POST_MESSAGE_SUFFIX = EOL + "),'*'); };</script></body></html>";
+
     private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
     private static final Logger PACKAGE_LOGGER = Logger.getLogger(Main.class.getPackage().getName());
 }
@@ -0,0 +1,113 @@
+package io.jenkins.update_center;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.Attributes;
+
+/**
+ * The main attributes of a plugin's manifest that are used to describe it. Instances are immutable.
+ *
+ * {@code Plugin-Dependencies} is only split into {@link HPI.Dependency} instances when they're needed, so that a
+ * malformed value only affects {@link #getDependencies()}, not the other attributes.
+ *
+ * @see ManifestAttributesStore
+ */
+final class ManifestAttributes {
+    private final String jenkinsVersion;
+    private final String hudsonVersion;
+    private final String compatibleSinceVersion;
+    private final String url;
+    private final String pluginDependencies;
+
+    private volatile List<HPI.Dependency> dependencies;
+
+    private ManifestAttributes(String jenkinsVersion, String hudsonVersion, String compatibleSinceVersion, String url, String pluginDependencies) {
+        this.jenkinsVersion = jenkinsVersion;
+        this.hudsonVersion = hudsonVersion;
+        this.compatibleSinceVersion = compatibleSinceVersion;
+        this.url = url;
+        this.pluginDependencies = pluginDependencies;
+    }
+
+    @Nonnull
+    static ManifestAttributes from(@Nonnull Attributes attributes) {
+        return new ManifestAttributes(attributes.getValue("Jenkins-Version"), attributes.getValue("Hudson-Version"),
+                attributes.getValue("Compatible-Since-Version"), attributes.getValue("Url"), attributes.getValue("Plugin-Dependencies"));
+    }
+
+    @CheckForNull
+    String getJenkinsVersion() {
+        return jenkinsVersion;
+    }
+
+    @CheckForNull
+    String getHudsonVersion() {
+        return hudsonVersion;
+    }
+
+    @CheckForNull
+    String getCompatibleSinceVersion() {
+        return compatibleSinceVersion;
+    }
+
+    @CheckForNull
+    String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the dependencies, not to be modified
+     * @throws RuntimeException if {@code Plugin-Dependencies} is malformed
+     */
+    @Nonnull
+    List<HPI.Dependency> getDependencies() {
+        List<HPI.Dependency> result = dependencies;
+        if (result == null) {
+            final List<HPI.Dependency> parsed = new ArrayList<>();
+            if (pluginDependencies != null) {
+                for (String token : pluginDependencies.split(",")) {
+                    parsed.add(new HPI.Dependency(token));
+                }
+            }
+            result = Collections.unmodifiableList(parsed);
+            dependencies = result;
+        }
+        return result;
+    }
+
+    void write(@Nonnull DataOutput out) throws IOException {
+        writeString(out, jenkinsVersion);
+        writeString(out, hudsonVersion);
+        writeString(out, compatibleSinceVersion);
+        writeString(out, url);
+        writeString(out, pluginDependencies);
+    }
+
+    @Nonnull
+    static ManifestAttributes read(@Nonnull DataInput in) throws IOException {
+        final String jenkinsVersion = readString(in);
+        final String hudsonVersion = readString(in);
+        final String compatibleSinceVersion = readString(in);
+        final String url = readString(in);
+        final String pluginDependencies = readString(in);
+        return new ManifestAttributes(jenkinsVersion, hudsonVersion, compatibleSinceVersion, url, pluginDependencies);
+    }
+
+    private static void writeString(DataOutput out, @CheckForNull String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @CheckForNull
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,172 @@
+package io.jenkins.update_center;
+
+import io.jenkins.update_center.util.Environment;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores the {@link ManifestAttributes} of plugin releases, keyed by the SHA-256 checksum of the plugin file, so that
+ * their manifests only need to be retrieved and parsed once.
+ *
+ * Configured using the following environment variable or system property:
+ * <dl>
+ *     <dt>{@code MANIFEST_CACHE_FILE}</dt>
+ *     <dd>Where the store is loaded from on first use and saved to by {@link #save()}. Set to an empty value to not
+ *     persist the store. Defaults to {@code caches/manifest-attributes.bin}.</dd>
+ * </dl>
+ */
+final class ManifestAttributesStore {
+    private static final Logger LOGGER = Logger.getLogger(ManifestAttributesStore.class.getName());
+
+    private static final int FORMAT_MAGIC = 0x4d414e49; // MANI
+    private static final int FORMAT_VERSION = 2;
+
+    private static ManifestAttributesStore instance;
+
+    private final Map<String, ManifestAttributes> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean modified = new AtomicBoolean();
+
+    /**
+     * @return the process-wide store, loaded from {@code MANIFEST_CACHE_FILE} if it exists
+     */
+    @Nonnull
+    static synchronized ManifestAttributesStore getInstance() {
+        if (instance == null) {
+            final File file = getFile();
+            ManifestAttributesStore store = null;
+            if (file != null) {
+                try {
+                    store = read(file);
+                    LOGGER.log(Level.INFO, "Loaded manifest attributes of " + store.size() + " plugin releases from " + file);
+                } catch (NoSuchFileException ex) {
+                    LOGGER.log(Level.FINE, "No manifest attributes at " + file);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Failed to load manifest attributes from " + file, ex);
+                }
+            }
+            instance = store == null ? new ManifestAttributesStore() : store;
+        }
+        return instance;
+    }
+
+    /**
+     * Saves the process-wide store to {@code MANIFEST_CACHE_FILE}, if it was used and changed.
+     */
+    static void save() {
+        final ManifestAttributesStore store;
+        synchronized (ManifestAttributesStore.class) {
+            store = instance;
+        }
+        final File file = getFile();
+        if (store == null || file == null || !store.modified.get()) {
+            return;
+        }
+        try {
+            store.write(file);
+            LOGGER.log(Level.INFO, "Saved manifest attributes of " + store.size() + " plugin releases to " + file);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to save manifest attributes to " + file, ex);
+        }
+    }
+
+    @CheckForNull
+    private static File getFile() {
+        final String path = Environment.getString("MANIFEST_CACHE_FILE", "caches/manifest-attributes.bin");
+        return path == null || path.isEmpty() ? null : new File(path);
+    }
+
+    /**
+     * @param sha256 the Base64 encoded SHA-256 checksum of the plugin file
+     * @return the stored attributes, or {@code null} if there are none
+     */
+    @CheckForNull
+    ManifestAttributes get(@Nonnull String sha256) {
+        return entries.get(sha256);
+    }
+
+    /**
+     * @param sha256 the Base64 encoded SHA-256 checksum of the plugin file
+     * @param attributes the attributes to store
+     */
+    void put(@Nonnull String sha256, @Nonnull ManifestAttributes attributes) {
+        entries.put(sha256, attributes);
+        modified.set(true);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    boolean isModified() {
+        return modified.get();
+    }
+
+    void write(@Nonnull File file) throws IOException {
+        modified.set(false);
+        // sorted, so that unchanged stores result in identical files
+        final Map<String, ManifestAttributes> snapshot = new TreeMap<>(entries);
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+        final Path tmp = Files.createTempFile(parent.toPath(), file.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(FORMAT_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, ManifestAttributes> entry : snapshot.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().write(out);
+                }
+            }
+            try {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Nonnull
+    static ManifestAttributesStore read(@Nonnull File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file.toPath()))))) {
+            if (in.readInt() != FORMAT_MAGIC) {
+                throw new IOException("Not a manifest attribute store: " + file);
+            }
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported manifest attribute store format " + version + ": " + file);
+            }
+            final ManifestAttributesStore store = new ManifestAttributesStore();
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String key = in.readUTF();
+                store.entries.put(key, ManifestAttributes.read(in));
+            }
+            return store;
+        }
+    }
+}
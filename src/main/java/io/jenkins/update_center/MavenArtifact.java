@@ -55,16 +55,19 @@ public class MavenArtifact {
     public final ArtifactCoordinates artifact;
     public final String version;
     private File hpi;
+    private File pom;
 
     private Manifest manifest;
 
+    private ArtifactMetadata metadata;
+
     public MavenArtifact(@Nonnull BaseMavenRepository repository, @Nonnull ArtifactCoordinates artifact) {
         this.artifact = artifact;
         this.repository = repository;
         version = artifact.version;
     }
 
-    public File resolve() throws IOException {
+    public synchronized File resolve() throws IOException {
         try {
             if (hpi == null) {
                 hpi = repository.resolve(artifact);
@@ -75,16 +78,32 @@ public class MavenArtifact {
         }
     }
 
-    public File resolvePOM() throws IOException {
-        return repository.resolve(artifact,"pom", null);
+    public synchronized File resolvePOM() throws IOException {
+        if (pom == null) {
+            pom = repository.resolve(artifact, "pom", null);
+        }
+        return pom;
     }
 
-    public MavenRepository.ArtifactMetadata getMetadata() throws IOException {
-        return repository.getMetadata(this);
+    public synchronized MavenRepository.ArtifactMetadata getMetadata() throws IOException {
+        if (metadata == null) {
+            metadata = repository.getMetadata(this);
+        }
+        return metadata;
     }
 
+    /**
+     * @return the parsed version, shared with all other artifacts with the same version
+     */
     public VersionNumber getVersion() {
-        return new VersionNumber(version);
+        return getVersionKey().getVersionNumber();
+    }
+
+    /**
+     * @return the version, for sorting and comparison
+     */
+    public VersionKey getVersionKey() {
+        return VersionKey.of(version);
     }
 
     public boolean isAlphaOrBeta() {
@@ -118,11 +137,11 @@ public class MavenArtifact {
     }
 
     public long getTimestamp() throws IOException {
-        ArtifactMetadata metadata = repository.getMetadata(this);
+        ArtifactMetadata metadata = getMetadata();
         return metadata != null ? metadata.timestamp : 0L;
     }
 
-    public Manifest getManifest() throws IOException {
+    public synchronized Manifest getManifest() throws IOException {
         if (manifest==null) {
             manifest = repository.getManifest(this);
         }
@@ -1,10 +1,13 @@
 package io.jenkins.update_center;
 
 import hudson.util.VersionNumber;
+import org.apache.commons.io.IOUtils;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
@@ -16,10 +19,20 @@ import java.util.logging.Logger;
 public interface MavenRepository {
     Logger LOGGER = Logger.getLogger(MavenRepository.class.getName());
 
+    /**
+     * Discover all plugins and their releases.
+     *
+     * The returned collection and the plugins in it must not be modified, as implementations may share them between
+     * callers. Use {@link Plugin#filter(java.util.function.Predicate)} to derive a subset.
+     *
+     * @return all plugins
+     * @throws IOException when an exception contacting the artifacts repository occurs
+     */
     Collection<Plugin> listJenkinsPlugins() throws IOException;
 
     /**
      * Discover all jenkins.war / hudson.war versions. Map must be sorted by version number, descending.
+     * Every invocation returns a new map that callers are free to modify.
      *
      * @return a map from version number to war
      * @throws IOException when an exception contacting the artifacts repository occurs
@@ -36,8 +49,52 @@ public interface MavenRepository {
 
     InputStream getZipFileEntry(MavenArtifact artifact, String path) throws IOException;
 
+    /**
+     * Retrieve the files needed to describe a plugin release.
+     *
+     * The default implementation retrieves them one by one. Implementations may retrieve and store them together.
+     * A POM that doesn't exist (i.e. {@link #resolve(ArtifactCoordinates)} returns {@code null} or throws
+     * {@link FileNotFoundException}) is treated as absent.
+     *
+     * @param artifact the plugin release
+     * @return the files of the plugin release
+     * @throws IOException when an exception contacting the artifacts repository occurs
+     */
+    default HpiContents getHpiContents(MavenArtifact artifact) throws IOException {
+        byte[] indexJelly = null;
+        final ArtifactCoordinates jar = new ArtifactCoordinates(artifact.artifact.groupId, artifact.artifact.artifactId, artifact.artifact.version, "jar");
+        try (InputStream is = getZipFileEntry(new MavenArtifact(artifact.repository, jar), "index.jelly")) {
+            indexJelly = IOUtils.toByteArray(is);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, () -> "Failed to read index.jelly of " + artifact.artifact.getGav() + ": " + e.getMessage());
+        }
+
+        File pom;
+        try {
+            pom = resolve(artifact.artifact, "pom", null);
+        } catch (FileNotFoundException e) {
+            LOGGER.log(Level.FINE, () -> "No POM for " + artifact.artifact.getGav() + ": " + e.getMessage());
+            pom = null;
+        }
+        return new HpiContents(indexJelly, pom != null && pom.isFile() ? Files.readAllBytes(pom.toPath()) : null);
+    }
+
+    /**
+     * Retrieves the specified file.
+     *
+     * @param artifact the file to retrieve
+     * @return the local copy of the file, or {@code null} if it doesn't exist in the repository
+     * @throws FileNotFoundException may be thrown instead of returning {@code null} if the file doesn't exist
+     * @throws IOException when an exception contacting the artifacts repository occurs
+     */
     File resolve(ArtifactCoordinates artifact) throws IOException;
 
+    /**
+     * Logs statistics about this repository's caches, if any, e.g. at the end of a run.
+     */
+    default void logStatistics() {
+    }
+
     default File resolve(ArtifactCoordinates a, String packaging, String classifier) throws IOException {
         return resolve(new ArtifactCoordinates(a.groupId, a.artifactId, a.version, packaging));
     }
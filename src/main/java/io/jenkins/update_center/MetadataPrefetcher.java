@@ -0,0 +1,148 @@
+package io.jenkins.update_center;
+
+import org.kohsuke.args4j.Option;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Retrieves the metadata of plugin releases (manifest, POM, description) before the JSON output is generated.
+ *
+ * {@link HPI} and {@link MavenArtifact} load metadata lazily and remember it, so without this, the metadata is
+ * downloaded one release at a time while serializing the JSON output.
+ */
+public class MetadataPrefetcher {
+    private static final Logger LOGGER = Logger.getLogger(MetadataPrefetcher.class.getName());
+
+    @Option(name = "--prefetch-threads", usage = "Number of threads retrieving plugin metadata before generating output. Set to 0 to disable prefetching.")
+    public int threads = 8;
+
+    /**
+     * Retrieves plugin metadata.
+     *
+     * @param repository the repository whose plugins' metadata to retrieve
+     * @param latestReleaseDetails whether to retrieve everything shown for the latest release of each plugin in the update center
+     * @param allReleaseManifests whether to retrieve the manifests of all releases, e.g. for their core dependencies
+     * @throws IOException if the plugins cannot be listed
+     */
+    public void prefetch(@Nonnull MavenRepository repository, boolean latestReleaseDetails, boolean allReleaseManifests) throws IOException {
+        Objects.requireNonNull(repository, "repository");
+
+        if (threads <= 0 || (!latestReleaseDetails && !allReleaseManifests)) {
+            return;
+        }
+
+        List<Runnable> tasks = new ArrayList<>();
+        for (Plugin plugin : repository.listJenkinsPlugins()) {
+            if (latestReleaseDetails) {
+                final HPI latest = plugin.getLatest();
+                tasks.add(() -> prefetchDetails(latest));
+            }
+            if (allReleaseManifests) {
+                for (HPI hpi : plugin.getArtifacts().values()) {
+                    tasks.add(() -> prefetchManifest(hpi));
+                }
+            }
+        }
+
+        LOGGER.log(Level.INFO, "Prefetching metadata for " + tasks.size() + " plugin releases using " + threads + " threads");
+        final long start = System.currentTimeMillis();
+        run(tasks);
+        LOGGER.log(Level.INFO, "Prefetched metadata in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Determines the core dependencies of all plugin releases, and indexes them for each plugin, so that update sites
+     * capped by core version don't need to determine them one release at a time.
+     *
+     * @param repository the repository whose plugins' core dependencies to index, not capped by core version
+     * @throws IOException if the plugins cannot be listed
+     * @see Plugin#getRequiredCoreIndex()
+     */
+    public void prefetchRequiredCores(@Nonnull MavenRepository repository) throws IOException {
+        Objects.requireNonNull(repository, "repository");
+
+        if (threads <= 0) {
+            return;
+        }
+
+        final Collection<Plugin> plugins = repository.listJenkinsPlugins();
+        List<Runnable> tasks = new ArrayList<>();
+        for (Plugin plugin : plugins) {
+            if (plugin.getRequiredCoreIndex() != null) {
+                continue;
+            }
+            for (HPI hpi : plugin.getArtifacts().values()) {
+                tasks.add(() -> prefetchRequiredCore(hpi));
+            }
+        }
+
+        LOGGER.log(Level.INFO, "Prefetching core dependencies of " + tasks.size() + " plugin releases using " + threads + " threads");
+        final long start = System.currentTimeMillis();
+        run(tasks);
+        for (Plugin plugin : plugins) {
+            plugin.indexRequiredCores();
+        }
+        LOGGER.log(Level.INFO, "Indexed core dependencies in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void run(List<Runnable> tasks) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Runnable task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while prefetching metadata", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to prefetch metadata", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void prefetchManifest(HPI hpi) {
+        try {
+            hpi.getPluginManifestAttributes();
+        } catch (IOException | RuntimeException e) {
+            // Failures will be reported when the metadata is actually used
+            LOGGER.log(Level.FINE, "Failed to prefetch manifest of " + hpi.getGavId(), e);
+        }
+    }
+
+    private static void prefetchRequiredCore(HPI hpi) {
+        try {
+            hpi.getRequiredJenkinsVersionKey();
+        } catch (IOException | RuntimeException e) {
+            // Failures will be reported when the index is built
+            LOGGER.log(Level.FINE, "Failed to prefetch core dependency of " + hpi.getGavId(), e);
+        }
+    }
+
+    private static void prefetchDetails(HPI hpi) {
+        prefetchManifest(hpi);
+        try {
+            hpi.getName();
+            hpi.getDescription();
+            hpi.getPluginUrl();
+            hpi.getScmUrl();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Failed to prefetch metadata of " + hpi.getGavId(), e);
+        }
+    }
+}
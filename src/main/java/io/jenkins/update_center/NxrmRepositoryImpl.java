@@ -1,28 +1,45 @@
 package io.jenkins.update_center;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Manifest;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
-import com.alibaba.fastjson.JSON;
-import de.schlichtherle.truezip.file.TFile;
-import de.schlichtherle.truezip.file.TFileInputStream;
+import com.alibaba.fastjson.JSONReader;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+import io.jenkins.update_center.util.ArtifactCache;
+import io.jenkins.update_center.util.Environment;
 import io.jenkins.update_center.util.HttpHelper;
+import io.jenkins.update_center.util.RemoteZipFile;
+import io.jenkins.update_center.util.SharedHttpClient;
+import io.jenkins.update_center.util.SingleFlight;
 import okhttp3.Credentials;
+import okhttp3.HttpUrl;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -31,7 +48,11 @@ import okhttp3.ResponseBody;
 import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.annotation.CheckForNull;
 
 public class NxrmRepositoryImpl extends BaseMavenRepository {
     private static final Logger LOGGER = Logger.getLogger(NxrmRepositoryImpl.class.getName());
@@ -54,9 +75,22 @@ public class NxrmRepositoryImpl extends BaseMavenRepository {
 
     private final String username;
     private final String password;
+    private final OkHttpClient client = SharedHttpClient.get();
+    private final ArtifactCache cache = new ArtifactCache(new File(Environment.getString("NXRM_CACHEDIR", "caches/nxrm")));
+    private final SingleFlight<String, File> downloads = new SingleFlight<>();
+    /**
+     * Zip files recently read from, by URL, so that the end of central directory record and the central directory are
+     * only retrieved once when several entries of the same file are read, e.g. the manifest and {@code index.jelly}.
+     */
+    private final Map<String, RemoteZipFile> remoteZipFiles = new LinkedHashMap<String, RemoteZipFile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RemoteZipFile> eldest) {
+            return size() > REMOTE_ZIP_FILES_MAX;
+        }
+    };
     private boolean initialized = false;
 
-    private final Map<String, JsonAsset> files = new HashMap<>();
+    private final Map<String, JsonAsset> files = new ConcurrentHashMap<>();
     private Set<ArtifactCoordinates> plugins;
     private Set<ArtifactCoordinates> wars;
 
@@ -110,27 +144,36 @@ public class NxrmRepositoryImpl extends BaseMavenRepository {
         public List<JsonAsset> assets;
     }
 
-    private static class JsonResponse {
-        public List<JsonItem> items;
-    }
-
     private void initialize() throws IOException {
         if (initialized) {
             throw new IllegalStateException("re-initialized");
         }
         LOGGER.log(Level.INFO, "Initializing " + this.getClass().getName());
 
+        // Continuation tokens are only known once a page has been read, so pages of one search are requested
+        // one after the other. The two searches are independent, so run them at the same time.
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Integer> warSearch = executor.submit(() -> populateFiles(NXRM_CORE_WAR_SEARCH_URL));
+            final int pluginAssets = populateFiles(NXRM_PLUGIN_SEARCH_URL);
+            final int warAssets = warSearch.get();
+            LOGGER.log(Level.INFO, "Found " + pluginAssets + " plugin assets and " + warAssets + " core assets");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while searching " + NXRM_API_URL, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to search " + NXRM_API_URL, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
         // collect plugins
-        Request request = new Request.Builder().url(NXRM_PLUGIN_SEARCH_URL).addHeader("Authorization", Credentials.basic(username, password)).get().build();
-        populateFiles(request);
         this.plugins = this.files.values().stream()
                 .filter(it -> it.path.endsWith(".hpi"))
                 .map(NxrmRepositoryImpl::toGav)
                 .collect(Collectors.toSet());
 
         // collect wars
-        request = new Request.Builder().url(NXRM_CORE_WAR_SEARCH_URL).addHeader("Authorization", Credentials.basic(username, password)).get().build();
-        populateFiles(request);
         this.wars = this.files.values().stream()
             .filter(it -> it.path.endsWith(".war"))
             .map(NxrmRepositoryImpl::toGav)
@@ -138,14 +181,60 @@ public class NxrmRepositoryImpl extends BaseMavenRepository {
         LOGGER.log(Level.INFO, "Initialized " + this.getClass().getName());
     }
 
-    private void populateFiles(Request request) throws IOException {
-        OkHttpClient client = new OkHttpClient.Builder().build();
-        try (final ResponseBody body = HttpHelper.body(client.newCall(request).execute())) {
-            final MediaType mediaType = body.contentType();
-            JsonResponse json = JSON.parseObject(body.byteStream(), mediaType == null ? StandardCharsets.UTF_8 : mediaType.charset(), JsonResponse.class);
-            json.items.forEach(it -> it.assets.forEach(a -> this.files.put(a.path, a))
-            );
-        }
+    /**
+     * Adds the assets of all pages of the specified search to {@link #files}.
+     *
+     * @return the number of assets found
+     */
+    private int populateFiles(String searchUrl) throws IOException {
+        int assets = 0;
+        int pages = 0;
+        String continuationToken = null;
+        do {
+            final HttpUrl.Builder url = HttpUrl.get(searchUrl).newBuilder();
+            if (continuationToken != null) {
+                url.addQueryParameter("continuationToken", continuationToken);
+            }
+            Request request = new Request.Builder().url(url.build()).addHeader("Authorization", Credentials.basic(username, password)).get().build();
+            try (final Response response = client.newCall(request).execute()) {
+                if (!response.isSuccessful()) {
+                    throw new IOException("Received HTTP error response: " + response.code() + " for URL: " + request.url());
+                }
+                final ResponseBody body = HttpHelper.body(response);
+                final MediaType mediaType = body.contentType();
+                final Charset charset = mediaType == null ? StandardCharsets.UTF_8 : mediaType.charset(StandardCharsets.UTF_8);
+                try (JSONReader reader = new JSONReader(new InputStreamReader(body.byteStream(), charset))) {
+                    continuationToken = null;
+                    reader.startObject();
+                    while (reader.hasNext()) {
+                        final String key = reader.readString();
+                        if ("items".equals(key)) {
+                            // Only materialize one item at a time
+                            reader.startArray();
+                            while (reader.hasNext()) {
+                                final JsonItem item = reader.readObject(JsonItem.class);
+                                if (item.assets != null) {
+                                    for (JsonAsset asset : item.assets) {
+                                        // Normalize paths so they can be looked up by #getUri
+                                        this.files.put(StringUtils.removeStart(asset.path, "/"), asset);
+                                        assets++;
+                                    }
+                                }
+                            }
+                            reader.endArray();
+                        } else if ("continuationToken".equals(key)) {
+                            continuationToken = reader.readString();
+                        } else {
+                            reader.readObject();
+                        }
+                    }
+                    reader.endObject();
+                }
+            }
+            pages++;
+        } while (continuationToken != null);
+        LOGGER.log(Level.FINE, "Read " + pages + " pages of search results from " + searchUrl);
+        return assets;
     }
 
     private String hexToBase64(String hex) throws IOException {
@@ -163,7 +252,7 @@ public class NxrmRepositoryImpl extends BaseMavenRepository {
     public ArtifactMetadata getMetadata(MavenArtifact artifact) throws IOException {
         ensureInitialized();
         ArtifactMetadata ret = new ArtifactMetadata();
-        final JsonAsset jsonAsset = files.get("/" + getUri(artifact.artifact));
+        final JsonAsset jsonAsset = files.get(getUri(artifact.artifact));
         try {
             ret.sha1 = hexToBase64(jsonAsset.checksum.sha1);
         } catch (NullPointerException e) {
@@ -182,7 +271,7 @@ public class NxrmRepositoryImpl extends BaseMavenRepository {
         return ret;
     }
 
-    private void ensureInitialized() throws IOException {
+    private synchronized void ensureInitialized() throws IOException {
         if (!initialized) {
             initialize();
             initialized = true;
@@ -197,57 +286,207 @@ public class NxrmRepositoryImpl extends BaseMavenRepository {
 
     @Override
     public Manifest getManifest(MavenArtifact artifact) throws IOException {
-        final JsonAsset jsonAsset = files.get("/" + getUri(artifact.artifact));
-        try (InputStream is = getFileContent(jsonAsset.downloadUrl)) {
-            return new Manifest(is);
+        ensureInitialized();
+        final byte[] manifest = getEntry(artifact.artifact, "META-INF/MANIFEST.MF");
+        if (manifest == null) {
+            LOGGER.log(Level.INFO, "No manifest in " + artifact);
+            return new Manifest();
         }
+        return new Manifest(new ByteArrayInputStream(manifest));
     }
 
-    private InputStream getFileContent(String url) throws IOException {
-        File manifestFile = getFile(url, "/META-INF/MANIFEST.MF");
-        return Files.newInputStream(manifestFile.toPath());
+    @Override
+    public InputStream getZipFileEntry(MavenArtifact artifact, String path) throws IOException {
+        ensureInitialized();
+        final String name = StringUtils.removeStart(path, "/");
+        final byte[] entry = getEntry(artifact.artifact, name);
+        if (entry == null) {
+            throw new IOException("No entry " + name + " in " + artifact);
+        }
+        return new ByteArrayInputStream(entry);
     }
 
-    private File getFile(final String url, String subPath) throws IOException {
-        File file = Files.createTempFile("tmp", ".zip").toFile();
-        File manifest = null;
-        LOGGER.log(Level.INFO, "Downloading : " + url );
+    /**
+     * Retrieves {@code index.jelly} using a single {@link RemoteZipFile} for the {@code .hpi} file, and stores it
+     * together with the POM as one cache entry.
+     *
+     * If the POM cannot be retrieved, the contents are returned without it, but not stored, so it's retried next time.
+     */
+    @Override
+    public HpiContents getHpiContents(MavenArtifact artifact) throws IOException {
+        ensureInitialized();
+        final String key = "contents/" + getCacheKey(artifact.artifact);
+        final File cached = cache.get(key);
+        if (cached != null) {
+            try (InputStream is = Files.newInputStream(cached.toPath())) {
+                return HpiContents.read(is);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to read cached contents of " + artifact + ", retrieving them again", e);
+            }
+        }
 
+        final RemoteZipFile hpi = getRemoteZipFile(artifact.artifact);
+        final byte[] indexJelly = getIndexJelly(hpi, artifact.artifact);
+        byte[] pom = null;
+        boolean complete = true;
         try {
-            OkHttpClient.Builder builder = new OkHttpClient.Builder();
-            OkHttpClient client = builder.build();
-            Request request = new Request.Builder().url(url).addHeader("Authorization", Credentials.basic(username, password)).get().build();
-            final Response response = client.newCall(request).execute();
-            if (response.isSuccessful()) {
-                try (final ResponseBody body = HttpHelper.body(response)) {
-                    try (InputStream inputStream = body.byteStream();
-                         FileOutputStream fos = new FileOutputStream(file)) {
-                        IOUtils.copy(inputStream, fos);
-                    }
-                    if (subPath == null) {
-                        return file;
-                    }
-                    manifest = Files.createTempFile("tmp", ".MF").toFile();
-                    TFile entry = new TFile(file, "/META-INF/MANIFEST.MF");
-                    if (entry.exists()) {
-                        try (TFileInputStream inputStream = new TFileInputStream(entry);
-                             FileOutputStream fos = new FileOutputStream(manifest)) {
-                            IOUtils.copy(inputStream, fos);
+            pom = getPom(artifact.artifact);
+        } catch (IOException e) {
+            // Like a failed download of the POM on its own, this only affects the values read from the POM
+            LOGGER.log(Level.INFO, "Failed to retrieve POM of " + artifact + ": " + e.getMessage());
+            complete = false;
+        }
+        final HpiContents contents = new HpiContents(indexJelly, pom);
+        if (complete) {
+            cache.put(key, contents.toByteArray());
+        }
+        return contents;
+    }
+
+    /**
+     * {@code index.jelly} is in the plugin's classes, which are usually small enough to read from the {@code .hpi}
+     * file we already have the central directory of. Otherwise, read it from the separate {@code .jar} file.
+     */
+    @CheckForNull
+    private byte[] getIndexJelly(RemoteZipFile hpi, ArtifactCoordinates artifact) throws IOException {
+        final String jarName = "WEB-INF/lib/" + artifact.artifactId + ".jar";
+        final long size = hpi.getCompressedSize(jarName);
+        if (size >= 0 && size <= NESTED_JAR_MAX_SIZE) {
+            final byte[] jar = hpi.getEntry(jarName);
+            if (jar != null) {
+                try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(jar))) {
+                    for (ZipEntry entry = zis.getNextEntry(); entry != null; entry = zis.getNextEntry()) {
+                        if (entry.getName().equals("index.jelly")) {
+                            return IOUtils.toByteArray(zis);
                         }
                     }
                 }
-            } else {
-                LOGGER.log(Level.INFO, "Received HTTP error response: " + response.code() + " for URL: " + url);
+                return null;
             }
-        } catch (RuntimeException e) {
-            throw new IOException(e);
         }
-        return manifest;
+        try {
+            return getEntry(new ArtifactCoordinates(artifact.groupId, artifact.artifactId, artifact.version, "jar"), "index.jelly");
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, () -> "Failed to read index.jelly of " + artifact + ": " + e.getMessage());
+            return null;
+        }
     }
 
-    @Override
-    public InputStream getZipFileEntry(MavenArtifact artifact, String path) throws IOException {
-        throw new IOException("Not implemented");
+    @CheckForNull
+    private byte[] getPom(ArtifactCoordinates artifact) throws IOException {
+        final String url = getDownloadUrl(new ArtifactCoordinates(artifact.groupId, artifact.artifactId, artifact.version, "pom"));
+        Request request = new Request.Builder().url(url).addHeader("Authorization", Credentials.basic(username, password)).get().build();
+        try (final Response response = client.newCall(request).execute()) {
+            if (response.code() == 404) {
+                return null;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("Received HTTP error response: " + response.code() + " for URL: " + url);
+            }
+            return HttpHelper.body(response).bytes();
+        }
+    }
+
+    /**
+     * Returns the specified entry of a zip file, from the cache if possible.
+     * Entries that don't exist are remembered as well.
+     */
+    @CheckForNull
+    private byte[] getEntry(ArtifactCoordinates artifact, String name) throws IOException {
+        final String key = "entries/" + getCacheKey(artifact) + "/" + URLEncoder.encode(name, "UTF-8");
+        final String missingKey = key + MISSING_SUFFIX;
+        final File cached = cache.get(key);
+        if (cached != null) {
+            return Files.readAllBytes(cached.toPath());
+        }
+        if (cache.get(missingKey) != null) {
+            return null;
+        }
+
+        final byte[] entry = getRemoteZipFile(artifact).getEntry(name);
+        if (entry == null) {
+            cache.put(missingKey, new byte[0]);
+        } else {
+            cache.put(key, entry);
+        }
+        return entry;
+    }
+
+    private RemoteZipFile getRemoteZipFile(ArtifactCoordinates artifact) throws IOException {
+        final String url = getDownloadUrl(artifact);
+        synchronized (remoteZipFiles) {
+            return remoteZipFiles.computeIfAbsent(url, u -> new RemoteZipFile(client, u, Credentials.basic(username, password)));
+        }
+    }
+
+    /**
+     * Files are identified by their checksum if it's known, otherwise by their URL. Releases are immutable, so either is fine.
+     */
+    private String getCacheKey(ArtifactCoordinates artifact) throws IOException {
+        final JsonAsset jsonAsset = files.get(getUri(artifact));
+        if (jsonAsset != null && jsonAsset.checksum != null && jsonAsset.checksum.sha1 != null) {
+            return ArtifactCache.checksumKey("sha1", jsonAsset.checksum.sha1.toLowerCase(Locale.ROOT));
+        }
+        return ArtifactCache.checksumKey("url", DigestUtils.sha256Hex(getDownloadUrl(artifact)));
+    }
+
+    /**
+     * Search results only include the files we searched for, but other files of the same release are next to them.
+     */
+    private String getDownloadUrl(ArtifactCoordinates artifact) throws IOException {
+        final JsonAsset jsonAsset = files.get(getUri(artifact));
+        if (jsonAsset != null) {
+            return jsonAsset.downloadUrl;
+        }
+        for (String packaging : Arrays.asList("hpi", "war")) {
+            final JsonAsset sibling = files.get(getUri(new ArtifactCoordinates(artifact.groupId, artifact.artifactId, artifact.version, packaging)));
+            if (sibling != null) {
+                return StringUtils.removeEnd(sibling.downloadUrl, "." + packaging) + "." + artifact.packaging;
+            }
+        }
+        throw new FileNotFoundException("No download URL for " + artifact);
+    }
+
+    /**
+     * Downloads the specified artifact to the cache, unless it's already there.
+     * Concurrent calls for the same artifact share a single download.
+     */
+    @CheckForNull
+    private File download(ArtifactCoordinates artifact) throws IOException {
+        final String key = "files/" + getCacheKey(artifact);
+        return downloads.load(key, () -> download(artifact, key));
+    }
+
+    @CheckForNull
+    private File download(ArtifactCoordinates artifact, String key) throws IOException {
+        final File cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        final String url = getDownloadUrl(artifact);
+        final JsonAsset jsonAsset = files.get(getUri(artifact));
+        final String expectedSha1 = jsonAsset != null && jsonAsset.checksum != null ? jsonAsset.checksum.sha1 : null;
+        LOGGER.log(Level.INFO, "Downloading : " + url + " (not found in cache)");
+
+        try {
+            Request request = new Request.Builder().url(url).addHeader("Authorization", Credentials.basic(username, password)).get().build();
+            try (final Response response = client.newCall(request).execute()) {
+                if (response.isSuccessful()) {
+                    try (final ResponseBody body = HttpHelper.body(response); InputStream inputStream = body.byteStream()) {
+                        return cache.put(key, inputStream, expectedSha1);
+                    }
+                } else if (response.code() == 404 || response.code() == 410) {
+                    LOGGER.log(Level.INFO, "Received HTTP error response: " + response.code() + " for URL: " + url);
+                } else {
+                    // Not just returning null, which would be taken to mean that the file doesn't exist
+                    throw new IOException("Received HTTP error response: " + response.code() + " for URL: " + url);
+                }
+            }
+        } catch (RuntimeException e) {
+            throw new IOException(e);
+        }
+        return null;
     }
 
     @Override
@@ -258,9 +497,12 @@ public class NxrmRepositoryImpl extends BaseMavenRepository {
         if (localFile.exists()) {
             return localFile;
         }
-        final JsonAsset jsonAsset = files.get("/" + getUri(artifact));
-        return getFile(jsonAsset.downloadUrl, null);
+        ensureInitialized();
+        return download(artifact);
     }
 
     private static final File LOCAL_REPO = new File(new File(System.getProperty("user.home")), ".m2/repository");
+    private static final String MISSING_SUFFIX = ".missing";
+    private static final long NESTED_JAR_MAX_SIZE = 1024 * 1024;
+    private static final int REMOTE_ZIP_FILES_MAX = Environment.getInteger("NXRM_REMOTE_ZIP_FILES", 64);
 }
@@ -25,10 +25,15 @@ package io.jenkins.update_center;
 
 import hudson.util.VersionNumber;
 
+import javax.annotation.CheckForNull;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,10 +47,14 @@ public final class Plugin {
     private static final Logger LOGGER = Logger.getLogger(Plugin.class.getName());
     private final String artifactId;
 
-    private final TreeMap<VersionNumber,HPI> artifacts = new TreeMap<>(VersionNumber.DESCENDING);
+    private final TreeMap<VersionNumber,HPI> artifacts = new TreeMap<>(VersionKey.DESCENDING);
+
+    private final NavigableMap<VersionNumber,HPI> unmodifiableArtifacts = Collections.unmodifiableNavigableMap(artifacts);
 
     private final Set<VersionNumber> duplicateVersions = new TreeSet<>();
 
+    private volatile RequiredCoreIndex requiredCoreIndex;
+
     public Plugin(String shortName) {
         this.artifactId = shortName;
     }
@@ -65,12 +74,16 @@ public final class Plugin {
      *     If another release exists with an equivalent version number (1.0 vs. 1.0.0), remove both from distribution due to nondeterminism.
      * </p>
      *
+     * <p>
+     *     Only used while the repository builds its plugin catalog, which is shared afterwards and must not be modified.
+     * </p>
+     *
      * @param hpi the plugin HPI
      */
-    public void addArtifact(HPI hpi) throws IOException {
+    void addArtifact(HPI hpi) throws IOException {
         VersionNumber v;
         try {
-            v = new VersionNumber(hpi.version);
+            v = hpi.getVersion();
         } catch (NumberFormatException e) {
             LOGGER.log(Level.WARNING, "Failed to parse version number " + hpi.version + " for " + hpi);
             return;
@@ -146,10 +159,51 @@ public final class Plugin {
     /**
      * All discovered versions, by the version numbers, newer versions first.
      *
-     * @return a map from version number to HPI
+     * @return an unmodifiable map from version number to HPI
+     */
+    public NavigableMap<VersionNumber, HPI> getArtifacts() {
+        return unmodifiableArtifacts;
+    }
+
+    /**
+     * Returns the index of the core dependencies of this plugin's releases, if it has been built.
+     *
+     * @return the index, or null if {@link #indexRequiredCores()} hasn't been called
+     */
+    @CheckForNull
+    public RequiredCoreIndex getRequiredCoreIndex() {
+        return requiredCoreIndex;
+    }
+
+    /**
+     * Builds the index of the core dependencies of this plugin's releases, unless that was already done.
+     * This determines the core dependency of every release, so it's usually done by {@link MetadataPrefetcher}.
+     *
+     * @return the index
+     */
+    public synchronized RequiredCoreIndex indexRequiredCores() {
+        if (requiredCoreIndex == null) {
+            requiredCoreIndex = RequiredCoreIndex.of(this);
+        }
+        return requiredCoreIndex;
+    }
+
+    /**
+     * Creates a view of this plugin that only contains the releases matching the specified predicate.
+     *
+     * <p>The {@link HPI} instances, and therefore all metadata they have already loaded, are shared with this plugin.</p>
+     *
+     * @param predicate determines which releases are included in the view
+     * @return a new plugin with the same artifact ID and the matching releases, possibly none
      */
-    public TreeMap<VersionNumber, HPI> getArtifacts() {
-        return artifacts;
+    public Plugin filter(Predicate<? super HPI> predicate) {
+        Plugin view = new Plugin(artifactId);
+        for (Map.Entry<VersionNumber, HPI> entry : artifacts.entrySet()) {
+            if (predicate.test(entry.getValue())) {
+                view.artifacts.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return view;
     }
 
     @Override
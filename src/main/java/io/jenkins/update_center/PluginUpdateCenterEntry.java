@@ -7,7 +7,9 @@ import javax.annotation.CheckForNull;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -33,6 +35,11 @@ public class PluginUpdateCenterEntry {
      */
     @CheckForNull
     private transient HPI previousOffered;
+    /**
+     * Latest published versions of all plugins, or {@code null} to use {@link LatestPluginVersions#getInstance()}.
+     */
+    @CheckForNull
+    private transient LatestPluginVersions latestPluginVersions;
 
     private PluginUpdateCenterEntry(String artifactId, HPI latestOffered, HPI previousOffered) {
         this.artifactId = artifactId;
@@ -44,6 +51,11 @@ public class PluginUpdateCenterEntry {
     public PluginUpdateCenterEntry() {}
 
     public PluginUpdateCenterEntry(Plugin plugin) throws IOException {
+        this(plugin, null);
+    }
+
+    public PluginUpdateCenterEntry(Plugin plugin, @CheckForNull LatestPluginVersions latestPluginVersions) throws IOException {
+        this.latestPluginVersions = latestPluginVersions;
         this.artifactId = plugin.getArtifactId();
         HPI previous = null, latest = null;
 
@@ -177,11 +189,11 @@ public class PluginUpdateCenterEntry {
     }
 
     public String getReleaseTimestamp() throws IOException {
-        return TIMESTAMP_FORMATTER.format(latestOffered.getTimestamp());
+        return TIMESTAMP_FORMATTER.format(Instant.ofEpochMilli(latestOffered.getTimestamp()));
     }
 
     public String getPreviousTimestamp() throws IOException {
-        return previousOffered == null ? null : TIMESTAMP_FORMATTER.format(previousOffered.getTimestamp());
+        return previousOffered == null ? null : TIMESTAMP_FORMATTER.format(Instant.ofEpochMilli(previousOffered.getTimestamp()));
     }
 
     public int getPopularity() throws IOException {
@@ -189,7 +201,7 @@ public class PluginUpdateCenterEntry {
     }
 
     public String getLatest() {
-        final LatestPluginVersions instance = LatestPluginVersions.getInstance();
+        final LatestPluginVersions instance = latestPluginVersions == null ? LatestPluginVersions.getInstance() : latestPluginVersions;
         final VersionNumber latestPublishedVersion = instance.getLatestVersion(artifactId);
         if (latestPublishedVersion == null || latestPublishedVersion.equals(latestOffered.getVersion())) {
             // only include latest version information if the currently published version isn't the latest
@@ -198,7 +210,7 @@ public class PluginUpdateCenterEntry {
         return latestPublishedVersion.toString();
     }
 
-    private static final SimpleDateFormat TIMESTAMP_FORMATTER = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'.00Z'", Locale.US);
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'.00Z'", Locale.US).withZone(ZoneId.systemDefault());
 
     private static final Logger LOGGER = Logger.getLogger(PluginUpdateCenterEntry.class.getName());
 }
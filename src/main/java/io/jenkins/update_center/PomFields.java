@@ -0,0 +1,261 @@
+package io.jenkins.update_center;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The values we read from a POM.
+ *
+ * Values are the trimmed text of the first matching element, with whitespace normalized as dom4j's
+ * {@code Element#getTextTrim()} does. Elements are matched by local name, so POMs with and without the Maven namespace
+ * are supported. Instances are immutable.
+ */
+public final class PomFields {
+    // XMLInputFactory implementations aren't guaranteed to be thread-safe
+    private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORY = ThreadLocal.withInitial(PomFields::createXmlInputFactory);
+
+    private static final String[] PATHS = {
+            "project/name",
+            "project/description",
+            "project/url",
+            "project/scm/url",
+            "project/scm/developerConnection",
+            "project/parent/groupId",
+            "project/parent/artifactId",
+            "project/parent/version",
+    };
+    private static final int NAME = 0;
+    private static final int DESCRIPTION = 1;
+    private static final int URL = 2;
+    private static final int SCM_URL = 3;
+    private static final int SCM_DEVELOPER_CONNECTION = 4;
+    private static final int PARENT_GROUP_ID = 5;
+    private static final int PARENT_ARTIFACT_ID = 6;
+    private static final int PARENT_VERSION = 7;
+
+    /**
+     * The fields of a POM that could not be read.
+     */
+    public static final PomFields EMPTY = new PomFields(new String[PATHS.length]);
+
+    private final String[] values;
+
+    private PomFields(String[] values) {
+        this.values = values;
+    }
+
+    @CheckForNull
+    public String getName() {
+        return values[NAME];
+    }
+
+    @CheckForNull
+    public String getDescription() {
+        return values[DESCRIPTION];
+    }
+
+    @CheckForNull
+    public String getUrl() {
+        return values[URL];
+    }
+
+    @CheckForNull
+    public String getScmUrl() {
+        return values[SCM_URL];
+    }
+
+    @CheckForNull
+    public String getScmDeveloperConnection() {
+        return values[SCM_DEVELOPER_CONNECTION];
+    }
+
+    /**
+     * @return the coordinates of the parent POM, or {@code null} if there is none
+     */
+    @CheckForNull
+    public ArtifactCoordinates getParent() {
+        if (values[PARENT_GROUP_ID] == null || values[PARENT_ARTIFACT_ID] == null || values[PARENT_VERSION] == null) {
+            return null;
+        }
+        return new ArtifactCoordinates(values[PARENT_GROUP_ID], values[PARENT_ARTIFACT_ID], values[PARENT_VERSION], "pom");
+    }
+
+    /**
+     * Reads the fields from a POM in a single pass, without building a document.
+     *
+     * @param is the POM, not closed by this method
+     * @return the fields
+     * @throws IOException if the POM cannot be read or parsed
+     */
+    @Nonnull
+    public static PomFields read(@Nonnull InputStream is) throws IOException {
+        final String[] values = new String[PATHS.length];
+        final StringBuilder text = new StringBuilder();
+        final List<String> path = new ArrayList<>();
+        String currentPath = "";
+        int capturing = -1;
+        int remaining = PATHS.length;
+        try {
+            final XMLStreamReader reader = XML_INPUT_FACTORY.get().createXMLStreamReader(is);
+            try {
+                while (reader.hasNext() && remaining > 0) {
+                    switch (reader.next()) {
+                        case XMLStreamConstants.START_ELEMENT:
+                            path.add(currentPath);
+                            currentPath = currentPath.isEmpty() ? reader.getLocalName() : currentPath + "/" + reader.getLocalName();
+                            if (capturing < 0) {
+                                final int index = indexOf(currentPath);
+                                if (index >= 0 && values[index] == null) {
+                                    capturing = index;
+                                    text.setLength(0);
+                                }
+                            }
+                            if (capturing < 0 && path.size() > 1 && !isPrefix(currentPath)) {
+                                // Nothing of interest in this element, e.g. <dependencies>
+                                skipElement(reader);
+                                currentPath = path.remove(path.size() - 1);
+                            }
+                            break;
+                        case XMLStreamConstants.CHARACTERS:
+                        case XMLStreamConstants.CDATA:
+                        case XMLStreamConstants.SPACE:
+                            // Like dom4j, only include the text directly in the element
+                            if (capturing >= 0 && currentPath.equals(PATHS[capturing])) {
+                                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                            }
+                            break;
+                        case XMLStreamConstants.END_ELEMENT:
+                            if (capturing >= 0 && currentPath.equals(PATHS[capturing])) {
+                                values[capturing] = normalize(text);
+                                capturing = -1;
+                                remaining--;
+                            }
+                            currentPath = path.remove(path.size() - 1);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to parse POM", e);
+        }
+        return new PomFields(values);
+    }
+
+    /**
+     * Writes the values, to be read by {@link #readValues(DataInput)}.
+     */
+    void writeValues(@Nonnull DataOutput out) throws IOException {
+        out.writeInt(values.length);
+        for (String value : values) {
+            if (value == null) {
+                out.writeInt(-1);
+            } else {
+                // not writeUTF, which is limited to 64 KB
+                final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Reads values written by {@link #writeValues(DataOutput)}.
+     *
+     * @throws IOException if the values cannot be read or were written for different fields
+     */
+    @Nonnull
+    static PomFields readValues(@Nonnull DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length != PATHS.length) {
+            throw new IOException("Expected " + PATHS.length + " values but got " + length);
+        }
+        final String[] values = new String[length];
+        for (int i = 0; i < length; i++) {
+            final int size = in.readInt();
+            if (size >= 0) {
+                final byte[] bytes = new byte[size];
+                in.readFully(bytes);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return new PomFields(values);
+    }
+
+    /**
+     * Identifies the fields read by this version, so that stored values can be discarded when fields are added.
+     */
+    static String getSignature() {
+        return String.join(",", PATHS);
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static int indexOf(String path) {
+        for (int i = 0; i < PATHS.length; i++) {
+            if (PATHS[i].equals(path)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isPrefix(String path) {
+        for (String p : PATHS) {
+            if (p.startsWith(path + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(CharSequence text) {
+        final StringBuilder b = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = b.length() > 0;
+            } else {
+                if (space) {
+                    b.append(' ');
+                    space = false;
+                }
+                b.append(c);
+            }
+        }
+        return b.toString();
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        // POMs don't need DTDs or external entities, and reading them would be unsafe
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -0,0 +1,205 @@
+package io.jenkins.update_center;
+
+import io.jenkins.update_center.util.Environment;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches the values read from POMs, keyed by the POM's coordinates and the checksum of its content, so a POM is only
+ * parsed again if its content changes.
+ *
+ * The number of entries is limited; when full, the least recently used entries are evicted.
+ *
+ * Configured using the following environment variables or system properties:
+ * <dl>
+ *     <dt>{@code POM_CACHE_MAX_ENTRIES}</dt>
+ *     <dd>The maximum number of entries. Defaults to 100000.</dd>
+ *     <dt>{@code POM_CACHE_FILE}</dt>
+ *     <dd>Where the cache is loaded from on first use and saved to by {@link #save()}, so later runs don't need to parse
+ *     any POMs they've seen before. Set to an empty value to not persist the cache. Defaults to {@code caches/pom-fields.bin}.</dd>
+ * </dl>
+ */
+final class PomFieldsCache {
+    private static final Logger LOGGER = Logger.getLogger(PomFieldsCache.class.getName());
+
+    private static final int FORMAT_MAGIC = 0x504f4d46; // POMF
+    private static final int FORMAT_VERSION = 1;
+
+    private static PomFieldsCache instance;
+
+    private final int maxEntries;
+    private final LinkedHashMap<String, PomFields> entries;
+    private boolean modified;
+
+    PomFieldsCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, PomFields>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PomFields> eldest) {
+                return size() > PomFieldsCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @return the process-wide cache, loaded from {@code POM_CACHE_FILE} if it exists
+     */
+    @Nonnull
+    static synchronized PomFieldsCache getInstance() {
+        if (instance == null) {
+            final int maxEntries = Environment.getInteger("POM_CACHE_MAX_ENTRIES", 100000);
+            final File file = getFile();
+            PomFieldsCache cache = null;
+            if (file != null) {
+                try {
+                    cache = read(file, maxEntries);
+                    LOGGER.log(Level.INFO, "Loaded " + cache.size() + " POM cache entries from " + file);
+                } catch (NoSuchFileException ex) {
+                    LOGGER.log(Level.FINE, "No POM cache at " + file);
+                } catch (IOException ex) {
+                    LOGGER.log(Level.WARNING, "Failed to load POM cache from " + file, ex);
+                }
+            }
+            instance = cache == null ? new PomFieldsCache(maxEntries) : cache;
+        }
+        return instance;
+    }
+
+    /**
+     * Saves the process-wide cache to {@code POM_CACHE_FILE}, if it was used and changed.
+     */
+    static void save() {
+        final PomFieldsCache cache;
+        synchronized (PomFieldsCache.class) {
+            cache = instance;
+        }
+        final File file = getFile();
+        if (cache == null || file == null || !cache.isModified()) {
+            return;
+        }
+        try {
+            cache.write(file);
+            LOGGER.log(Level.INFO, "Saved " + cache.size() + " POM cache entries to " + file);
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to save POM cache to " + file, ex);
+        }
+    }
+
+    @CheckForNull
+    private static File getFile() {
+        final String path = Environment.getString("POM_CACHE_FILE", "caches/pom-fields.bin");
+        return path == null || path.isEmpty() ? null : new File(path);
+    }
+
+    /**
+     * Returns the values read from the specified POM, parsing it unless it's cached.
+     *
+     * @param gav the coordinates of the POM
+     * @param pom the content of the POM
+     * @return the values
+     * @throws IOException if the POM cannot be parsed
+     */
+    @Nonnull
+    PomFields get(@Nonnull String gav, @Nonnull byte[] pom) throws IOException {
+        final String key = gav + ":" + DigestUtils.sha256Hex(pom);
+        synchronized (this) {
+            final PomFields cached = entries.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // parse outside the lock; concurrent lookups of the same POM are rare and just parse it twice
+        final PomFields fields = PomFields.read(new ByteArrayInputStream(pom));
+        synchronized (this) {
+            entries.put(key, fields);
+            modified = true;
+        }
+        return fields;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized boolean isModified() {
+        return modified;
+    }
+
+    void write(@Nonnull File file) throws IOException {
+        final List<Map.Entry<String, PomFields>> snapshot;
+        synchronized (this) {
+            // least recently used first, so that order is retained when reading
+            snapshot = new ArrayList<>(entries.entrySet());
+            modified = false;
+        }
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+        final Path tmp = Files.createTempFile(parent.toPath(), file.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(FORMAT_MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(PomFields.getSignature());
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, PomFields> entry : snapshot) {
+                    out.writeUTF(entry.getKey());
+                    entry.getValue().writeValues(out);
+                }
+            }
+            try {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    @Nonnull
+    static PomFieldsCache read(@Nonnull File file, int maxEntries) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file.toPath()))))) {
+            if (in.readInt() != FORMAT_MAGIC) {
+                throw new IOException("Not a POM cache: " + file);
+            }
+            final int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported POM cache format " + version + ": " + file);
+            }
+            if (!PomFields.getSignature().equals(in.readUTF())) {
+                throw new IOException("POM cache was written for different fields: " + file);
+            }
+            final PomFieldsCache cache = new PomFieldsCache(maxEntries);
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                final String key = in.readUTF();
+                cache.entries.put(key, PomFields.readValues(in));
+            }
+            return cache;
+        }
+    }
+}
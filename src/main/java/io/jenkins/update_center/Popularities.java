@@ -2,7 +2,7 @@ package io.jenkins.update_center;
 
 import com.alibaba.fastjson.JSON;
 import io.jenkins.update_center.util.HttpHelper;
-import okhttp3.OkHttpClient;
+import io.jenkins.update_center.util.SharedHttpClient;
 import okhttp3.Request;
 
 import java.io.IOException;
@@ -35,7 +35,7 @@ public class Popularities {
     private static void initialize() throws IOException {
         Request request = new Request.Builder().url(JSON_URL).get().build();
 
-        String bodyString = HttpHelper.getResponseBody(new OkHttpClient(), request);
+        String bodyString = HttpHelper.getResponseBody(SharedHttpClient.get(), request);
 
         JsonResponse response = JSON.parseObject(bodyString, JsonResponse.class);
         if (response.plugins == null) {
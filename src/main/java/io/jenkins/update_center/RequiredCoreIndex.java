@@ -0,0 +1,123 @@
+package io.jenkins.update_center;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The core dependencies of all releases of a plugin, indexed to find the newest releases compatible with a core version.
+ *
+ * For each position in the release history (newest first), the index records the lowest and second lowest core
+ * dependency of the releases up to that position. Both only ever decrease, so the newest and second newest release
+ * compatible with a core version are found with a binary search each, without looking at the other releases.
+ *
+ * Releases whose core dependency cannot be determined are never compatible.
+ */
+public final class RequiredCoreIndex {
+    private static final Logger LOGGER = Logger.getLogger(RequiredCoreIndex.class.getName());
+
+    private final HPI[] releases;
+
+    /**
+     * Lowest core dependency of the releases up to each position, null while none is known.
+     */
+    private final VersionKey[] lowest;
+
+    /**
+     * Second lowest core dependency of the releases up to each position, null while fewer than two are known.
+     */
+    private final VersionKey[] secondLowest;
+
+    RequiredCoreIndex(@Nonnull HPI[] releases, @Nonnull VersionKey[] requiredCores) {
+        if (releases.length != requiredCores.length) {
+            throw new IllegalArgumentException("Expected " + releases.length + " core dependencies, got " + requiredCores.length);
+        }
+        this.releases = releases.clone();
+        this.lowest = new VersionKey[releases.length];
+        this.secondLowest = new VersionKey[releases.length];
+        VersionKey first = null;
+        VersionKey second = null;
+        for (int i = 0; i < requiredCores.length; i++) {
+            final VersionKey core = requiredCores[i];
+            if (core != null) {
+                if (first == null || core.compareTo(first) < 0) {
+                    second = first;
+                    first = core;
+                } else if (second == null || core.compareTo(second) < 0) {
+                    second = core;
+                }
+            }
+            lowest[i] = first;
+            secondLowest[i] = second;
+        }
+    }
+
+    /**
+     * Determines the core dependency of each release of the specified plugin.
+     * Each {@link HPI} remembers its core dependency, so this is cheap if they were determined before, e.g. in parallel
+     * by {@link MetadataPrefetcher}.
+     *
+     * @param plugin the plugin
+     * @return the index of its releases
+     */
+    @Nonnull
+    static RequiredCoreIndex of(@Nonnull Plugin plugin) {
+        final Collection<HPI> releases = plugin.getArtifacts().values();
+        final HPI[] hpis = releases.toArray(new HPI[0]);
+        final VersionKey[] requiredCores = new VersionKey[hpis.length];
+        for (int i = 0; i < hpis.length; i++) {
+            try {
+                requiredCores[i] = hpis[i].getRequiredJenkinsVersionKey();
+            } catch (IOException x) {
+                LOGGER.log(Level.WARNING, "Failed to determine core dependency of version " + hpis[i].version + " for plugin: " + plugin.getArtifactId(), x);
+            }
+        }
+        return new RequiredCoreIndex(hpis, requiredCores);
+    }
+
+    /**
+     * Returns the newest releases compatible with the specified core version.
+     *
+     * @param core the core version
+     * @return the newest and second newest compatible release, newest first, or fewer if there aren't that many
+     */
+    @Nonnull
+    public List<HPI> getNewestCompatible(@Nonnull VersionKey core) {
+        final List<HPI> result = new ArrayList<>(2);
+        final int newest = firstAtMost(lowest, core);
+        if (newest < releases.length) {
+            result.add(releases[newest]);
+            final int secondNewest = firstAtMost(secondLowest, core);
+            if (secondNewest < releases.length) {
+                result.add(releases[secondNewest]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the first position whose (decreasing) value is at most the specified version, or the length if there is none
+     */
+    private static int firstAtMost(VersionKey[] values, VersionKey version) {
+        int low = 0;
+        int high = values.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (isAtMost(values[mid], version)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private static boolean isAtMost(@CheckForNull VersionKey value, VersionKey version) {
+        return value != null && value.compareTo(version) <= 0;
+    }
+}
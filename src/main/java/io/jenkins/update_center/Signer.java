@@ -3,40 +3,42 @@ package io.jenkins.update_center;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.security.DigestOutputStream;
 import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.MessageDigest;
 import java.security.PrivateKey;
+import java.security.PublicKey;
 import java.security.Signature;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.TrustAnchor;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import io.jenkins.update_center.json.JsonSignature;
 import io.jenkins.update_center.util.Environment;
+import org.apache.commons.codec.DecoderException;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.output.NullOutputStream;
-import org.apache.commons.io.output.TeeOutputStream;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openssl.PEMReader;
 import org.jvnet.hudson.crypto.CertificateUtil;
-import org.jvnet.hudson.crypto.SignatureOutputStream;
 import org.kohsuke.args4j.Option;
 
 import static java.security.Security.addProvider;
@@ -58,6 +60,12 @@ public class Signer {
 
     private static final int MINIMUM_VALIDITY_DURATION = Environment.getInteger("CERTIFICATE_MINIMUM_VALID_DAYS", 30);
 
+    /**
+     * Signing contexts by their configuration (private key, certificates, and root CAs), so that every invocation of the
+     * same process signing with the same key material loads and validates it only once.
+     */
+    private static final Map<List<Object>, SigningContext> SIGNING_CONTEXTS = new HashMap<>();
+
     /**
      * Checks if the signer is properly configured to generate a signature
      *
@@ -75,12 +83,59 @@ public class Signer {
     }
 
     public JsonSignature sign(String json) throws GeneralSecurityException, IOException {
+        return sign(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Signs JSON that's already been encoded.
+     *
+     * @param json the UTF-8 encoded JSON
+     * @return the signature block, or {@code null} if the signer isn't configured
+     */
+    public JsonSignature sign(byte[] json) throws GeneralSecurityException, IOException {
         if (!isConfigured()) {
             return null;
         }
 
+        final SigningContext context = getSigningContext();
+
         JsonSignature sign = new JsonSignature();
 
+        // the correct signature (since Jenkins 1.433); no longer generate wrong signatures for older releases.
+        context.generator.fill(sign, json);
+
+        // and certificate chain
+        sign.setCertificates(context.certificates);
+
+        return sign;
+    }
+
+    /**
+     * The key material needed for signing, loaded and validated once.
+     */
+    private static final class SigningContext {
+        private final SignatureGenerator generator;
+        private final List<String> certificates;
+
+        private SigningContext(SignatureGenerator generator, List<String> certificates) {
+            this.generator = generator;
+            this.certificates = certificates;
+        }
+    }
+
+    private SigningContext getSigningContext() throws IOException, GeneralSecurityException {
+        final List<Object> configuration = Arrays.asList(privateKey, new ArrayList<>(certificates), rootCA == null ? null : new ArrayList<>(rootCA));
+        synchronized (SIGNING_CONTEXTS) {
+            SigningContext context = SIGNING_CONTEXTS.get(configuration);
+            if (context == null) {
+                context = loadSigningContext();
+                SIGNING_CONTEXTS.put(configuration, context);
+            }
+            return context;
+        }
+    }
+
+    private SigningContext loadSigningContext() throws IOException, GeneralSecurityException {
         List<X509Certificate> certs = getCertificateChain();
         X509Certificate signer = certs.get(0); // the first one is the signer, and the rest is the chain to a root CA.
 
@@ -89,84 +144,129 @@ public class Signer {
              key = ((KeyPair) pem.readObject()).getPrivate();
         }
 
-        // the correct signature (since Jenkins 1.433); no longer generate wrong signatures for older releases.
-        SignatureGenerator sg = new SignatureGenerator(signer, key);
-
-        try (OutputStreamWriter osw = new OutputStreamWriter(sg.out, StandardCharsets.UTF_8)) {
-            IOUtils.write(json, osw);
-        }
-        sg.fill(sign);
-
-        // and certificate chain
         List<String> certificates = new ArrayList<>();
         for (X509Certificate cert : certs)
             certificates.add(new String(Base64.encodeBase64(cert.getEncoded()), StandardCharsets.UTF_8));
-        sign.setCertificates(certificates);
 
-        return sign;
+        return new SigningContext(new SignatureGenerator(signer.getPublicKey(), key), Collections.unmodifiableList(certificates));
     }
 
     /**
-     * Generates a digest and signature. Can be only used once, and then it needs to be thrown away.
+     * Generates digests and signatures.
+     *
+     * Each digest is computed only once, and the signatures are then computed and verified from the digest rather than
+     * from the content, using the {@code DigestInfo} encoding that {@code SHA1withRSA} and {@code SHA512withRSA} would
+     * sign (PKCS #1 v1.5, RFC 8017 section 9.2). The resulting signatures are identical. SHA-1 and SHA-512 are computed
+     * concurrently.
+     *
+     * Instances are thread-safe, and keep an initialized {@link Signature} for signing and one for verifying per thread.
      */
     static class SignatureGenerator {
-        private final MessageDigest sha1;
-        private final Signature sha1sig;
-        private final MessageDigest sha512;
-        private final Signature sha512sig;
-        private final TeeOutputStream out;
-        private final Signature verifier1;
-        private final Signature verifier512;
-
-        SignatureGenerator(X509Certificate signer, PrivateKey key) throws GeneralSecurityException {
-            // this is for computing a digest
-            sha1 = DigestUtils.getSha1Digest();
-            sha512 = DigestUtils.getSha512Digest();
-            DigestOutputStream dos1 = new DigestOutputStream(new NullOutputStream(), sha1);
-            DigestOutputStream dos512 = new DigestOutputStream(new NullOutputStream(), sha512);
-
-            // this is for computing a signature
-            sha1sig = Signature.getInstance("SHA1withRSA");
-            sha1sig.initSign(key);
-            SignatureOutputStream sos1 = new SignatureOutputStream(sha1sig);
-
-            sha512sig = Signature.getInstance("SHA512withRSA");
-            sha512sig.initSign(key);
-            SignatureOutputStream sos512 = new SignatureOutputStream(sha512sig);
-
-            // this is for verifying that signature validates
-            verifier1 = Signature.getInstance("SHA1withRSA");
-            verifier1.initVerify(signer.getPublicKey());
-            SignatureOutputStream vos1 = new SignatureOutputStream(verifier1);
-
-            verifier512 = Signature.getInstance("SHA512withRSA");
-            verifier512.initVerify(signer.getPublicKey());
-            SignatureOutputStream vos512 = new SignatureOutputStream(verifier512);
-
-            out = new TeeOutputStream(new TeeOutputStream(new TeeOutputStream(new TeeOutputStream(new TeeOutputStream(dos1, sos1), vos1), dos512), sos512), vos512);
-        }
-
-        public TeeOutputStream getOut() {
-            return out;
-        }
-
-        private void fill(JsonSignature signature) throws GeneralSecurityException {
-            // digest
-            byte[] digest = sha1.digest();
-            signature.setDigest(new String(Base64.encodeBase64(digest), StandardCharsets.UTF_8));
-            signature.setDigest512(Hex.encodeHexString(sha512.digest()));
-
-            // signature
-            byte[] s1 = sha1sig.sign();
-            byte[] s512 = sha512sig.sign();
-            signature.setSignature(new String(Base64.encodeBase64(s1), StandardCharsets.UTF_8));
-            signature.setSignature512(Hex.encodeHexString(s512));
+        private static final byte[] SHA1_DIGEST_INFO_PREFIX = decodeHex("3021300906052b0e03021a05000414");
+        private static final byte[] SHA512_DIGEST_INFO_PREFIX = decodeHex("3051300d060960864801650304020305000440");
+
+        private final PublicKey publicKey;
+        private final PrivateKey privateKey;
+        private final ThreadLocal<Signature> signers = new ThreadLocal<>();
+        private final ThreadLocal<Signature> verifiers = new ThreadLocal<>();
+
+        SignatureGenerator(PublicKey publicKey, PrivateKey privateKey) {
+            this.publicKey = publicKey;
+            this.privateKey = privateKey;
+        }
+
+        private static class SignedDigest {
+            private final byte[] digest;
+            private final byte[] signature;
+
+            private SignedDigest(byte[] digest, byte[] signature) {
+                this.digest = digest;
+                this.signature = signature;
+            }
+        }
+
+        void fill(JsonSignature signature, byte[] content) throws GeneralSecurityException {
+            final CompletableFuture<SignedDigest> future512 = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return digestAndSign(DigestUtils.getSha512Digest(), SHA512_DIGEST_INFO_PREFIX, content, "SHA-512");
+                } catch (GeneralSecurityException e) {
+                    throw new CompletionException(e);
+                }
+            });
+            final SignedDigest sha1 = digestAndSign(DigestUtils.getSha1Digest(), SHA1_DIGEST_INFO_PREFIX, content, "SHA-1");
+            final SignedDigest sha512;
+            try {
+                sha512 = future512.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof GeneralSecurityException) {
+                    throw (GeneralSecurityException) e.getCause();
+                }
+                throw e;
+            }
+
+            signature.setDigest(new String(Base64.encodeBase64(sha1.digest), StandardCharsets.UTF_8));
+            signature.setDigest512(Hex.encodeHexString(sha512.digest));
+            signature.setSignature(new String(Base64.encodeBase64(sha1.signature), StandardCharsets.UTF_8));
+            signature.setSignature512(Hex.encodeHexString(sha512.signature));
+        }
+
+        private SignedDigest digestAndSign(MessageDigest messageDigest, byte[] digestInfoPrefix, byte[] content, String name) throws GeneralSecurityException {
+            final byte[] digest = messageDigest.digest(content);
+            final byte[] digestInfo = new byte[digestInfoPrefix.length + digest.length];
+            System.arraycopy(digestInfoPrefix, 0, digestInfo, 0, digestInfoPrefix.length);
+            System.arraycopy(digest, 0, digestInfo, digestInfoPrefix.length, digest.length);
+
+            final byte[] signature;
+            final boolean valid;
+            try {
+                final Signature signer = getSigner();
+                signer.update(digestInfo);
+                signature = signer.sign();
+
+                final Signature verifier = getVerifier();
+                verifier.update(digestInfo);
+                valid = verifier.verify(signature);
+            } catch (GeneralSecurityException e) {
+                // don't reuse instances in an unknown state
+                signers.remove();
+                verifiers.remove();
+                throw e;
+            }
 
             // did the signature validate?
-            if (!verifier1.verify(s1))
-                throw new GeneralSecurityException("Signature (SHA-1) failed to validate. Either the certificate and the private key weren't matching, or a bug in the program.");
-            if (!verifier512.verify(s512))
-                throw new GeneralSecurityException("Signature (SHA-512) failed to validate. Either the certificate and the private key weren't matching, or a bug in the program.");
+            if (!valid) {
+                throw new GeneralSecurityException("Signature (" + name + ") failed to validate. Either the certificate and the private key weren't matching, or a bug in the program.");
+            }
+            return new SignedDigest(digest, signature);
+        }
+
+        // Signature#sign and Signature#verify reset the instance to its initialized state, so it can be reused directly
+        private Signature getSigner() throws GeneralSecurityException {
+            Signature signer = signers.get();
+            if (signer == null) {
+                signer = Signature.getInstance("NONEwithRSA");
+                signer.initSign(privateKey);
+                signers.set(signer);
+            }
+            return signer;
+        }
+
+        private Signature getVerifier() throws GeneralSecurityException {
+            Signature verifier = verifiers.get();
+            if (verifier == null) {
+                verifier = Signature.getInstance("NONEwithRSA");
+                verifier.initVerify(publicKey);
+                verifiers.set(verifier);
+            }
+            return verifier;
+        }
+
+        private static byte[] decodeHex(String hex) {
+            try {
+                return Hex.decodeHex(hex.toCharArray());
+            } catch (DecoderException e) {
+                throw new ExceptionInInitializerError(e);
+            }
         }
     }
 
@@ -0,0 +1,135 @@
+package io.jenkins.update_center;
+
+import hudson.util.VersionNumber;
+
+import javax.annotation.Nonnull;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A parsed version, ordered like {@link VersionNumber}, but cheaper to compare.
+ *
+ * Instances are interned, so each distinct version string is only parsed once. Purely numeric versions with up to four
+ * components (each less than 65536, the first less than 32768) are additionally packed into a {@code long}, so comparing
+ * two of them doesn't need to look at the parsed {@link VersionNumber} at all. That covers nearly all Jenkins core and
+ * plugin versions.
+ */
+public final class VersionKey implements Comparable<VersionKey> {
+    private static final Map<String, VersionKey> INTERNED = new ConcurrentHashMap<>();
+
+    /**
+     * Like {@link VersionNumber#DESCENDING}, but compares the interned keys of the versions.
+     */
+    public static final Comparator<VersionNumber> DESCENDING = (o1, o2) -> of(o2).compareTo(of(o1));
+
+    private static final int MAX_PACKED_COMPONENTS = 4;
+    private static final int BITS_PER_COMPONENT = 16;
+
+    private final String version;
+    private final VersionNumber versionNumber;
+    private final boolean packed;
+    private final long packedValue;
+
+    private VersionKey(String version) {
+        this.version = version;
+        this.versionNumber = new VersionNumber(version);
+        final long value = pack(version);
+        this.packed = value >= 0;
+        this.packedValue = value;
+    }
+
+    /**
+     * @param version the version string
+     * @return the key for the version
+     * @throws NumberFormatException if {@link VersionNumber} cannot parse the version
+     */
+    @Nonnull
+    public static VersionKey of(@Nonnull String version) {
+        final VersionKey key = INTERNED.get(version);
+        if (key != null) {
+            return key;
+        }
+        return INTERNED.computeIfAbsent(version, VersionKey::new);
+    }
+
+    @Nonnull
+    public static VersionKey of(@Nonnull VersionNumber versionNumber) {
+        return of(versionNumber.toString());
+    }
+
+    /**
+     * @return the parsed version, shared by all users of this key
+     */
+    @Nonnull
+    public VersionNumber getVersionNumber() {
+        return versionNumber;
+    }
+
+    @Override
+    public int compareTo(@Nonnull VersionKey o) {
+        if (this == o) {
+            return 0;
+        }
+        if (packed && o.packed) {
+            return Long.compare(packedValue, o.packedValue);
+        }
+        return versionNumber.compareTo(o.versionNumber);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof VersionKey)) {
+            return false;
+        }
+        final VersionKey other = (VersionKey) o;
+        if (packed && other.packed) {
+            return packedValue == other.packedValue;
+        }
+        return versionNumber.equals(other.versionNumber);
+    }
+
+    @Override
+    public int hashCode() {
+        return versionNumber.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return version;
+    }
+
+    /**
+     * Packs a version like {@code 2.361.4} into a {@code long}, 16 bits per component, with missing trailing
+     * components as 0. Like {@link VersionNumber}, {@code 1.2} and {@code 1.2.0} are therefore equal.
+     *
+     * @return the packed version, or a negative value if the version cannot be packed
+     */
+    static long pack(String version) {
+        long value = 0;
+        int components = 0;
+        int component = 0;
+        int digits = 0;
+        for (int i = 0; i <= version.length(); i++) {
+            final char c = i < version.length() ? version.charAt(i) : '.';
+            if (c >= '0' && c <= '9') {
+                component = component * 10 + (c - '0');
+                digits++;
+                if (component >= 1 << BITS_PER_COMPONENT) {
+                    return -1;
+                }
+            } else if (c == '.' && digits > 0 && components < MAX_PACKED_COMPONENTS) {
+                value |= (long) component << (BITS_PER_COMPONENT * (MAX_PACKED_COMPONENTS - 1 - components));
+                components++;
+                component = 0;
+                digits = 0;
+            } else {
+                return -1;
+            }
+        }
+        return value;
+    }
+}
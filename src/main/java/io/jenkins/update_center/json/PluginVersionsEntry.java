@@ -5,7 +5,9 @@ import io.jenkins.update_center.MavenRepository;
 import io.jenkins.update_center.HPI;
 
 import java.io.IOException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Locale;
 
@@ -43,8 +45,8 @@ public class PluginVersionsEntry {
         buildDate = hpi.getTimestampAsString();
         dependencies = hpi.getDependencies();
         compatibleSinceVersion = hpi.getCompatibleSinceVersion();
-        releaseTimestamp = TIMESTAMP_FORMATTER.format(hpi.getTimestamp());
+        releaseTimestamp = TIMESTAMP_FORMATTER.format(Instant.ofEpochMilli(hpi.getTimestamp()));
     }
 
-    private static final SimpleDateFormat TIMESTAMP_FORMATTER = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'.00Z'", Locale.US);
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'.00Z'", Locale.US).withZone(ZoneId.systemDefault());
 }
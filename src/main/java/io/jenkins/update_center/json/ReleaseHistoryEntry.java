@@ -3,6 +3,7 @@ package io.jenkins.update_center.json;
 import com.alibaba.fastjson.annotation.JSONField;
 import io.jenkins.update_center.HPI;
 import io.jenkins.update_center.MavenRepository.ArtifactMetadata;
+import io.jenkins.update_center.Plugin;
 
 import java.io.IOException;
 import java.util.Calendar;
@@ -32,7 +33,7 @@ class ReleaseHistoryEntry {
         DATE_CUTOFF.add(Calendar.DAY_OF_MONTH, -31);
     }
 
-    ReleaseHistoryEntry(HPI hpi) throws IOException {
+    ReleaseHistoryEntry(HPI hpi, Plugin plugin) throws IOException {
         if (hpi.getTimestampAsDate().after(DATE_CUTOFF.getTime())) {
             title = hpi.getName();
             wiki = hpi.getPluginUrl();
@@ -40,15 +41,15 @@ class ReleaseHistoryEntry {
             title = null;
             wiki = null;
         }
-        if (hpi.getPlugin().getLatest() == hpi) {
+        if (plugin.getLatest() == hpi) {
             latestRelease = true;
         }
-        if (hpi.getPlugin().getFirst() == hpi) {
+        if (plugin.getFirst() == hpi) {
             firstRelease = true;
         }
         version = hpi.version;
         this.gav = hpi.artifact.getGav();
-        ArtifactMetadata metadata = hpi.repository.getMetadata(hpi);
+        ArtifactMetadata metadata = hpi.getMetadata();
         timestamp = metadata != null ? metadata.timestamp : 0L;
         url = "https://plugins.jenkins.io/" + hpi.artifact.artifactId;
     }
@@ -3,10 +3,12 @@ package io.jenkins.update_center.json;
 import com.alibaba.fastjson.annotation.JSONField;
 import io.jenkins.update_center.HPI;
 import io.jenkins.update_center.MavenRepository;
+import io.jenkins.update_center.Plugin;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,9 +17,14 @@ public class ReleaseHistoryRoot extends WithoutSignature {
     public final List<ReleaseHistoryDate> releaseHistory;
 
     public ReleaseHistoryRoot(MavenRepository repository) throws IOException {
+        // HPI#getPlugin() returns the unfiltered plugin, so look up the plugins as offered by this repository
+        Map<String, Plugin> pluginsById = new HashMap<>();
+        for (Plugin plugin : repository.listJenkinsPlugins()) {
+            pluginsById.put(plugin.getArtifactId(), plugin);
+        }
         List<ReleaseHistoryDate> list = new ArrayList<>();
         for (Map.Entry<Date, Map<String, HPI>> entry : repository.listPluginsByReleaseDate().entrySet()) {
-            ReleaseHistoryDate releaseHistoryDate = new ReleaseHistoryDate(entry.getKey(), entry.getValue());
+            ReleaseHistoryDate releaseHistoryDate = new ReleaseHistoryDate(entry.getKey(), entry.getValue(), pluginsById);
             list.add(releaseHistoryDate);
         }
         this.releaseHistory = list;
@@ -0,0 +1,129 @@
+package io.jenkins.update_center.json;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+
+/**
+ * Signed JSON output, see {@link WithSignature#encodeSigned(io.jenkins.update_center.Signer, boolean)}.
+ *
+ * The JSON is kept as it was serialized, plus the signature block to be inserted into it, so several files with the
+ * same JSON can be written without building the complete output in memory, e.g. as a {@code String}, for each of them.
+ */
+public final class SignedJson {
+    private final byte[] json;
+    private final int insertPosition;
+    private final byte[] insert;
+
+    /**
+     * @param json the JSON
+     * @param insertPosition where {@code insert} goes into {@code json}
+     * @param insert what to insert, e.g. the signature block
+     */
+    SignedJson(@Nonnull byte[] json, int insertPosition, @Nonnull byte[] insert) {
+        this.json = json;
+        this.insertPosition = insertPosition;
+        this.insert = insert;
+    }
+
+    /**
+     * @return the size of the JSON in bytes
+     */
+    public long size() {
+        return (long) json.length + insert.length;
+    }
+
+    /**
+     * Writes the JSON.
+     *
+     * @param out the stream to write to, not closed by this method
+     * @throws IOException when any IO error occurs
+     */
+    public void writeTo(@Nonnull OutputStream out) throws IOException {
+        out.write(json, 0, insertPosition);
+        out.write(insert);
+        out.write(json, insertPosition, json.length - insertPosition);
+    }
+
+    /**
+     * Writes the JSON to a file, optionally wrapped in other content, e.g. JavaScript for JSONP.
+     *
+     * The content is written to a temporary file using a single gathering write of the prefix, the JSON, and the
+     * suffix, without copying the JSON. The temporary file then replaces the file atomically, so a partially written
+     * file is never visible.
+     *
+     * @param file the file to write to
+     * @param prefix written before the JSON, if any
+     * @param suffix written after the JSON, if any
+     * @throws IOException when any IO error occurs
+     */
+    public void writeTo(@Nonnull File file, @CheckForNull String prefix, @CheckForNull String suffix) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create parent directory " + parent);
+        }
+        final ByteBuffer[] buffers = {
+                encode(prefix),
+                ByteBuffer.wrap(json, 0, insertPosition),
+                ByteBuffer.wrap(insert),
+                ByteBuffer.wrap(json, insertPosition, json.length - insertPosition),
+                encode(suffix),
+        };
+        final Path tmp = Files.createTempFile(parent.toPath(), file.getName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                long remaining = 0;
+                for (ByteBuffer buffer : buffers) {
+                    remaining += buffer.remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= channel.write(buffers);
+                }
+                channel.force(false);
+            }
+            try {
+                // temporary files are only readable by their owner, but these are served by a web server
+                Files.setPosixFilePermissions(tmp, PosixFilePermissions.fromString("rw-r--r--"));
+            } catch (UnsupportedOperationException ex) {
+                // not a POSIX file system
+            }
+            try {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static ByteBuffer encode(@CheckForNull String s) {
+        return s == null ? ByteBuffer.allocate(0) : ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the JSON as a {@code String}
+     */
+    @Override
+    public String toString() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(json.length + insert.length);
+        try {
+            writeTo(out);
+        } catch (IOException e) {
+            throw new AssertionError(e); // ByteArrayOutputStream doesn't throw
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -28,14 +28,17 @@ import hudson.util.VersionNumber;
 import io.jenkins.update_center.HPI;
 import io.jenkins.update_center.JenkinsWar;
 import io.jenkins.update_center.MavenRepository;
+import io.jenkins.update_center.Plugin;
+import io.jenkins.update_center.VersionKey;
 
 import java.io.IOException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -81,18 +84,17 @@ public class TieredUpdateSitesGenerator extends WithoutSignature {
     }
 
     public void update() throws IOException {
-        Collection<HPI> allPluginReleases = this.repository.listJenkinsPlugins().stream()
-                .map(plugin -> plugin.getArtifacts().values())
-                .reduce(new HashSet<>(), (acc, els) -> { acc.addAll(els); return acc; });
-
-        final List<VersionNumber> coreDependencyVersions = allPluginReleases.stream().map(v -> {
-            try {
-                return v.getRequiredJenkinsVersion();
-            } catch (IOException e) {
-                LOGGER.log(Level.WARNING, "Failed to determine required Jenkins version for " + v.getGavId(), e);
-                return null;
+        // Each release's core dependency is only determined once, newest core dependency first
+        final TreeMap<VersionKey, List<HPI>> releasesByCoreDependency = new TreeMap<>(Comparator.reverseOrder());
+        for (Plugin plugin : this.repository.listJenkinsPlugins()) {
+            for (HPI hpi : plugin.getArtifacts().values()) {
+                try {
+                    releasesByCoreDependency.computeIfAbsent(hpi.getRequiredJenkinsVersionKey(), v -> new ArrayList<>()).add(hpi);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to determine required Jenkins version for " + hpi.getGavId(), e);
+                }
             }
-        }).filter(Objects::nonNull).collect(Collectors.toSet()).stream().map(VersionNumber::new).sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
 
         final TreeMap<VersionNumber, JenkinsWar> allJenkinsWarsByVersionNumber = this.repository.getJenkinsWarsByVersionNumber();
         final Set<VersionNumber> weeklyCores = new HashSet<>();
@@ -101,17 +103,11 @@ public class TieredUpdateSitesGenerator extends WithoutSignature {
         boolean stableDone = false;
         boolean weeklyDone = false;
 
-        for (VersionNumber dependencyVersion : coreDependencyVersions) {
+        for (Map.Entry<VersionKey, List<HPI>> entry : releasesByCoreDependency.entrySet()) {
+            final VersionNumber dependencyVersion = entry.getKey().getVersionNumber();
             final JenkinsWar war = allJenkinsWarsByVersionNumber.get(dependencyVersion);
             if (war == null) {
-                LOGGER.log(Level.INFO, "Did not find declared core dependency version among all core releases: " + dependencyVersion.toString() + ". It is used by " + allPluginReleases.stream().filter( p -> {
-                    try {
-                        return p.getRequiredJenkinsVersion().equals(dependencyVersion.toString());
-                    } catch (IOException e) {
-                        // ignore
-                        return false;
-                    }
-                }).map(HPI::getGavId).collect(Collectors.joining(", ")));
+                LOGGER.log(Level.INFO, "Did not find declared core dependency version among all core releases: " + dependencyVersion.toString() + ". It is used by " + entry.getValue().stream().map(HPI::getGavId).collect(Collectors.joining(", ")));
                 continue;
             }
             final boolean releaseRecentEnough = isReleaseRecentEnough(war);
@@ -6,10 +6,12 @@ import com.google.common.base.Functions;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import io.jenkins.update_center.BaseMavenRepository;
 import io.jenkins.update_center.Deprecations;
+import io.jenkins.update_center.LatestPluginVersions;
 import io.jenkins.update_center.MavenRepository;
 import io.jenkins.update_center.Plugin;
 import io.jenkins.update_center.PluginUpdateCenterEntry;
 
+import javax.annotation.CheckForNull;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -49,6 +51,15 @@ public class UpdateCenterRoot extends WithSignature {
     public Map<String, UpdateCenterDeprecation> deprecations;
 
     public UpdateCenterRoot(String id, String connectionCheckUrl, MavenRepository repo, File warningsJsonFile) throws IOException {
+        this(id, connectionCheckUrl, repo, warningsJsonFile, null);
+    }
+
+    /**
+     * Like {@link #UpdateCenterRoot(String, String, MavenRepository, File)}, but referencing the specified latest
+     * published plugin versions instead of {@link LatestPluginVersions#getInstance()}, so that several update sites
+     * can be generated at the same time.
+     */
+    public UpdateCenterRoot(String id, String connectionCheckUrl, MavenRepository repo, File warningsJsonFile, @CheckForNull LatestPluginVersions latestPluginVersions) throws IOException {
         if (StringUtils.isEmpty(id)) {
             throw new IllegalArgumentException("'id' is required");
         }
@@ -67,7 +78,7 @@ public class UpdateCenterRoot extends WithSignature {
 
         for (Plugin plugin : repo.listJenkinsPlugins()) {
             try {
-                PluginUpdateCenterEntry entry = new PluginUpdateCenterEntry(plugin);
+                PluginUpdateCenterEntry entry = new PluginUpdateCenterEntry(plugin, latestPluginVersions);
                 plugins.put(plugin.getArtifactId(), entry);
             } catch (IOException ex) {
                 LOGGER.log(Level.INFO, "Failed to add update center entry for: " + plugin, ex);
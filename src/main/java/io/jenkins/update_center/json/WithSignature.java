@@ -5,14 +5,10 @@ import com.alibaba.fastjson.annotation.JSONField;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 import io.jenkins.update_center.Signer;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.StringWriter;
-import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.security.GeneralSecurityException;
 import java.time.Instant;
 import java.time.ZoneOffset;
@@ -41,39 +37,122 @@ public abstract class WithSignature {
     }
 
     /**
-     * Generate JSON checksums and add a signature block to the JSON written to the specified {@link Writer}.
+     * Generate JSON checksums and add a signature block to the JSON.
      *
-     * This will run JSON generation twice: Once without the signature block to compute checksums, and a second time to
-     * include the signature block and write it to the output file.
+     * For compact output, JSON generation runs only once, without the signature block. The checksums and signatures
+     * are computed from the resulting bytes, and the signature block is then inserted into them where fastjson would
+     * have written it, i.e. the output is the same as if the object had been serialized again with the signature block.
      *
-     * Because of this, it is important that (with the exception of {@link #getSignature()} all getters etc. of subtypes
-     * and any types reachable through the object graph for JSON generation return the same content on subsequent calls.
+     * Because of this, implementations of this class must not have a property named {@code signature} other than
+     * {@link #getSignature()}, and must not use {@link JSONField#ordinal()} to reorder top-level properties.
      *
-     * Additionally, implementations of this class, and all types reachable via fields and getters used during JSON
-     * generation should employ some sort of caching to prevent expensive computations from being invoked twice.
+     * Pretty-printed output is generated by serializing again with the signature block, so it is exactly what fastjson
+     * produces. All getters etc. reachable during JSON generation therefore need to return the same content on
+     * subsequent calls.
      *
-     * @param writer the writer to write to
      * @param signer the signer
      * @param pretty whether to pretty-print format the JSON output
+     * @return the signed JSON
      * @throws IOException when any IO error occurs
      * @throws GeneralSecurityException when an issue during signing occurs
      */
-    private void writeWithSignature(Writer writer, Signer signer, boolean pretty) throws IOException, GeneralSecurityException {
+    public SignedJson encodeSigned(Signer signer, boolean pretty) throws IOException, GeneralSecurityException {
         signature = null;
 
-        final String unsignedJson = JSON.toJSONString(this, SerializerFeature.DisableCircularReferenceDetect);
+        final byte[] unsignedJson = JSON.toJSONBytes(this, SerializerFeature.DisableCircularReferenceDetect);
         signature = signer.sign(unsignedJson);
 
         if (pretty) {
-            JSON.writeJSONString(writer, this, SerializerFeature.DisableCircularReferenceDetect, SerializerFeature.PrettyFormat);
-        } else {
-            JSON.writeJSONString(writer, this, SerializerFeature.DisableCircularReferenceDetect);
+            final byte[] prettyJson = JSON.toJSONBytes(this, SerializerFeature.DisableCircularReferenceDetect, SerializerFeature.PrettyFormat);
+            return new SignedJson(prettyJson, prettyJson.length, new byte[0]);
         }
-        writer.flush();
+        if (signature == null) {
+            return new SignedJson(unsignedJson, unsignedJson.length, new byte[0]);
+        }
+        return withMember(unsignedJson, SIGNATURE, JSON.toJSONBytes(signature, SerializerFeature.DisableCircularReferenceDetect));
+    }
+
+    private static final String SIGNATURE = "signature";
+
+    /**
+     * Inserts a top-level member into a compact JSON object in the same position as fastjson does by default, i.e.
+     * ordered by name.
+     *
+     * @param json the compact JSON object without the member
+     * @param name the name of the member
+     * @param value the compact JSON value of the member
+     * @return the JSON object with the member
+     * @throws IOException if {@code json} is not a compact JSON object
+     */
+    static SignedJson withMember(byte[] json, String name, byte[] value) throws IOException {
+        final int position = findMemberPosition(json, name);
+        final ByteArrayOutputStream member = new ByteArrayOutputStream(value.length + name.length() + 4);
+        if (json[position] == '}' && json[position - 1] != '{') {
+            member.write(',');
+        }
+        member.write('"');
+        member.write(name.getBytes(StandardCharsets.UTF_8));
+        member.write('"');
+        member.write(':');
+        member.write(value);
+        if (json[position] != '}') {
+            member.write(',');
+        }
+        return new SignedJson(json, position, member.toByteArray());
+    }
+
+    /**
+     * Finds where a top-level member with the specified name needs to be inserted.
+     *
+     * @return the offset of the first top-level member whose name sorts after {@code name}, or of the closing brace
+     * @throws IOException if {@code json} is not a compact JSON object
+     */
+    private static int findMemberPosition(byte[] json, String name) throws IOException {
+        if (json.length < 2 || json[0] != '{' || json[json.length - 1] != '}') {
+            throw new IOException("Not a JSON object");
+        }
+        int depth = 0;
+        boolean expectName = false;
+        for (int i = 0; i < json.length; i++) {
+            final byte b = json[i];
+            if (b == '"') {
+                final int end = skipString(json, i);
+                if (depth == 1 && expectName) {
+                    final String member = new String(json, i + 1, end - i - 1, StandardCharsets.UTF_8);
+                    if (member.compareTo(name) > 0) {
+                        return i;
+                    }
+                }
+                expectName = false;
+                i = end;
+            } else if (b == '{' || b == '[') {
+                depth++;
+                expectName = b == '{' && depth == 1;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            } else if (b == ',') {
+                expectName = depth == 1;
+            }
+        }
+        return json.length - 1;
     }
 
     /**
-     * Convenience wrapper for {@link #writeWithSignature(Writer, Signer, boolean)} writing to a file.
+     * @return the offset of the quote ending the string starting at {@code start}
+     */
+    private static int skipString(byte[] json, int start) throws IOException {
+        for (int i = start + 1; i < json.length; i++) {
+            if (json[i] == '\\') {
+                i++;
+            } else if (json[i] == '"') {
+                return i;
+            }
+        }
+        throw new IOException("Unterminated string");
+    }
+
+    /**
+     * Convenience wrapper for {@link #encodeSigned(Signer, boolean)} writing to a file.
      *
      * @param outputFile the file to write to
      * @param signer the signer
@@ -82,9 +161,7 @@ public abstract class WithSignature {
      * @throws GeneralSecurityException when an issue during signing occurs
      */
     public void writeWithSignature(File outputFile, Signer signer, boolean pretty) throws IOException, GeneralSecurityException {
-        try (OutputStream os = Files.newOutputStream(outputFile.toPath()); OutputStreamWriter writer = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
-            writeWithSignature(writer, signer, pretty);
-        }
+        encodeSigned(signer, pretty).writeTo(outputFile, null, null);
     }
 
     /**
@@ -96,8 +173,6 @@ public abstract class WithSignature {
      * @throws GeneralSecurityException when an issue during signing occurs
      */
     public String encodeWithSignature(Signer signer, boolean pretty)  throws IOException, GeneralSecurityException {
-        StringWriter writer = new StringWriter();
-        writeWithSignature(writer, signer, pretty);
-        return writer.getBuffer().toString();
+        return encodeSigned(signer, pretty).toString();
     }
 }
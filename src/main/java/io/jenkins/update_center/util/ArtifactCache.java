@@ -0,0 +1,108 @@
+package io.jenkins.update_center.util;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+
+/**
+ * Persistent cache of immutable files, like released artifacts and entries extracted from them.
+ *
+ * Keys are relative paths, usually including a checksum of the artifact, so that entries never need to be invalidated.
+ * Files are written to a temporary file first and then moved into place, so concurrent readers (including other
+ * processes using the same directory) only ever see complete files.
+ */
+public class ArtifactCache {
+    private final File directory;
+
+    public ArtifactCache(@NonNull File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Builds a cache key from a checksum, distributing entries across subdirectories to limit the number of files per directory.
+     *
+     * @param type the type of checksum, e.g. {@code sha1}
+     * @param hex the hex encoded checksum
+     * @return the key
+     */
+    public static String checksumKey(@NonNull String type, @NonNull String hex) {
+        return type + "/" + hex.substring(0, 2) + "/" + hex;
+    }
+
+    /**
+     * @param key the key
+     * @return the cached file, or {@code null} if there is no cached file for that key
+     */
+    @CheckForNull
+    public File get(@NonNull String key) {
+        final File file = new File(directory, key);
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * Stores the specified content.
+     *
+     * @param key the key
+     * @param content the content to store, not closed by this method
+     * @param expectedSha1 the hex encoded expected SHA-1 checksum of the content, if known
+     * @return the cached file
+     * @throws IOException if writing fails, or the content does not match the expected checksum
+     */
+    @NonNull
+    public File put(@NonNull String key, @NonNull InputStream content, @CheckForNull String expectedSha1) throws IOException {
+        final File file = new File(directory, key);
+        final File parent = file.getParentFile();
+        if (!parent.mkdirs() && !parent.isDirectory()) {
+            throw new IOException("Failed to create cache directory " + parent);
+        }
+
+        final Path tmp = Files.createTempFile(parent.toPath(), file.getName(), ".tmp");
+        try {
+            final MessageDigest sha1 = DigestUtils.getSha1Digest();
+            try (InputStream in = new DigestInputStream(content, sha1); OutputStream out = Files.newOutputStream(tmp)) {
+                IOUtils.copy(in, out);
+            }
+            if (expectedSha1 != null) {
+                final String actualSha1 = Hex.encodeHexString(sha1.digest());
+                if (!actualSha1.equalsIgnoreCase(expectedSha1)) {
+                    throw new IOException("Checksum mismatch for " + key + ": expected SHA-1 " + expectedSha1 + " but got " + actualSha1);
+                }
+            }
+            try {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return file;
+    }
+
+    /**
+     * Stores the specified content.
+     *
+     * @param key the key
+     * @param content the content to store
+     * @return the cached file
+     * @throws IOException if writing fails
+     */
+    @NonNull
+    public File put(@NonNull String key, @NonNull byte[] content) throws IOException {
+        return put(key, new ByteArrayInputStream(content), null);
+    }
+}
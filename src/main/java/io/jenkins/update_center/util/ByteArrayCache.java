@@ -0,0 +1,113 @@
+package io.jenkins.update_center.util;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of small files, limited by the total size of the cached content.
+ * When full, the least recently used entries are evicted.
+ *
+ * Callers must not modify the arrays passed to or returned by this cache.
+ */
+public class ByteArrayCache {
+    /**
+     * Rough estimate of the memory used by an entry in addition to its key's characters and its content.
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes the maximum size of the cached content, including an estimate of per-entry overhead
+     */
+    public ByteArrayCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param key the key
+     * @return the cached content, or {@code null} if there is none
+     */
+    @CheckForNull
+    public synchronized byte[] get(@NonNull String key) {
+        final byte[] value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Adds content to the cache, evicting other entries if necessary. Content larger than the cache is not added.
+     *
+     * @param key the key
+     * @param value the content
+     */
+    public synchronized void put(@NonNull String key, @NonNull byte[] value) {
+        final byte[] previous = entries.remove(key);
+        if (previous != null) {
+            bytes -= weigh(key, previous);
+        }
+        final long weight = weigh(key, value);
+        if (weight > maxBytes) {
+            return;
+        }
+        final Iterator<Map.Entry<String, byte[]>> it = entries.entrySet().iterator();
+        while (bytes + weight > maxBytes && it.hasNext()) {
+            final Map.Entry<String, byte[]> eldest = it.next();
+            bytes -= weigh(eldest.getKey(), eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+        entries.put(key, value);
+        bytes += weight;
+    }
+
+    private static long weigh(String key, byte[] value) {
+        return ENTRY_OVERHEAD + 2L * key.length() + value.length;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the size of the cached content, including an estimate of per-entry overhead
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ByteArrayCache{entries=" + entries.size() + ", bytes=" + bytes + "/" + maxBytes + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+}
@@ -0,0 +1,283 @@
+package io.jenkins.update_center.util;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads individual entries from a zip file (like a plugin's {@code .hpi} file) on a web server without downloading
+ * the entire file.
+ *
+ * The end of central directory record and central directory are read from the end of the file using HTTP range
+ * requests, then only the requested entry's bytes are retrieved. If the server does not support range requests,
+ * the entire file is downloaded once and entries are read from memory.
+ */
+public class RemoteZipFile {
+    private static final Logger LOGGER = Logger.getLogger(RemoteZipFile.class.getName());
+
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_LENGTH = 22;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH = 20;
+    private static final int LOCAL_FILE_HEADER_LENGTH = 30;
+    private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+    /**
+     * The local file header's extra field usually has the same length as the central directory's, so we request a
+     * little more than that to get the entry in a single request most of the time.
+     */
+    private static final int LOCAL_EXTRA_FIELD_ALLOWANCE = 256;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private final OkHttpClient client;
+    private final String url;
+    private final String authorization;
+
+    /* The part at the end of the file we already have */
+    private byte[] tail;
+    private long tailOffset;
+
+    private Map<String, Entry> entries;
+
+    private static class Entry {
+        private final int method;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+        private final int nameLength;
+        private final int extraLength;
+
+        private Entry(int method, long compressedSize, long size, long localHeaderOffset, int nameLength, int extraLength) {
+            this.method = method;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+            this.nameLength = nameLength;
+            this.extraLength = extraLength;
+        }
+    }
+
+    /**
+     * @param client the HTTP client to use
+     * @param url the URL of the zip file
+     * @param authorization the value of the {@code Authorization} header to send, if any
+     */
+    public RemoteZipFile(@NonNull OkHttpClient client, @NonNull String url, @CheckForNull String authorization) {
+        this.client = client;
+        this.url = url;
+        this.authorization = authorization;
+    }
+
+    /**
+     * Reads an entry from the zip file.
+     *
+     * @param name the name of the entry, e.g. {@code META-INF/MANIFEST.MF}
+     * @return the uncompressed content of the entry, or {@code null} if there is no such entry
+     * @throws IOException if the zip file cannot be retrieved or is invalid
+     */
+    @CheckForNull
+    public synchronized byte[] getEntry(@NonNull String name) throws IOException {
+        final Entry entry = getEntries().get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.compressedSize > Integer.MAX_VALUE - LOCAL_FILE_HEADER_LENGTH || entry.size > Integer.MAX_VALUE) {
+            throw new IOException("Entry " + name + " in " + url + " is too large");
+        }
+
+        final int expectedHeaderLength = LOCAL_FILE_HEADER_LENGTH + entry.nameLength + entry.extraLength;
+        byte[] data = read(entry.localHeaderOffset, (int) Math.min(expectedHeaderLength + entry.compressedSize + LOCAL_EXTRA_FIELD_ALLOWANCE, length() - entry.localHeaderOffset));
+        if (data.length < LOCAL_FILE_HEADER_LENGTH || getInt(data, 0) != LOCAL_FILE_HEADER_SIGNATURE) {
+            throw new IOException("Invalid local file header for " + name + " in " + url);
+        }
+        final int dataOffset = LOCAL_FILE_HEADER_LENGTH + getShort(data, 26) + getShort(data, 28);
+        if (data.length < dataOffset + entry.compressedSize) {
+            data = read(entry.localHeaderOffset, (int) (dataOffset + entry.compressedSize));
+        }
+
+        switch (entry.method) {
+            case 0: // stored
+                byte[] stored = new byte[(int) entry.size];
+                System.arraycopy(data, dataOffset, stored, 0, stored.length);
+                return stored;
+            case 8: // deflated
+                return inflate(data, dataOffset, (int) entry.compressedSize, (int) entry.size, name);
+            default:
+                throw new IOException("Unsupported compression method " + entry.method + " for " + name + " in " + url);
+        }
+    }
+
+    /**
+     * @param name the name of the entry
+     * @return the compressed size of the entry, i.e. how much needs to be downloaded to read it, or {@code -1} if there is no such entry
+     * @throws IOException if the zip file cannot be retrieved or is invalid
+     */
+    public synchronized long getCompressedSize(@NonNull String name) throws IOException {
+        final Entry entry = getEntries().get(name);
+        return entry == null ? -1 : entry.compressedSize;
+    }
+
+    private byte[] inflate(byte[] data, int offset, int compressedSize, int size, String name) throws IOException {
+        // 'nowrap' inflaters may need an extra byte of input, so copy into a slightly larger buffer
+        final byte[] input = new byte[compressedSize + 1];
+        System.arraycopy(data, offset, input, 0, compressedSize);
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(input);
+            final byte[] output = new byte[size];
+            int length = 0;
+            while (length < size && !inflater.finished()) {
+                int n = inflater.inflate(output, length, size - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != size) {
+                throw new IOException("Unexpected size of " + name + " in " + url + ": " + length + " instead of " + size);
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new IOException("Failed to inflate " + name + " in " + url, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private Map<String, Entry> getEntries() throws IOException {
+        if (entries != null) {
+            return entries;
+        }
+
+        // The end of central directory record is at the very end, followed by a comment of up to 64 KB, and possibly
+        // preceded by a ZIP64 locator
+        fetchTail(ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH + END_OF_CENTRAL_DIRECTORY_LENGTH + MAX_COMMENT_LENGTH);
+
+        int eocd = -1;
+        for (int i = tail.length - END_OF_CENTRAL_DIRECTORY_LENGTH; i >= 0; i--) {
+            if (getInt(tail, i) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new IOException("No end of central directory record found in " + url);
+        }
+        // Values that don't fit are stored in the ZIP64 end of central directory record, located by a record immediately
+        // preceding this one. Without that, e.g. a count of 0xFFFF is just the number of entries.
+        final int locator = eocd - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_LENGTH;
+        if (locator >= 0 && getInt(tail, locator) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE) {
+            throw new IOException("ZIP64 files are not supported: " + url);
+        }
+        final int count = getShort(tail, eocd + 10);
+        final long centralDirectorySize = getUnsignedInt(tail, eocd + 12);
+        final long centralDirectoryOffset = getUnsignedInt(tail, eocd + 16);
+
+        final byte[] centralDirectory = read(centralDirectoryOffset, (int) centralDirectorySize);
+        final Map<String, Entry> result = new HashMap<>();
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            if (position + 46 > centralDirectory.length || getInt(centralDirectory, position) != CENTRAL_DIRECTORY_SIGNATURE) {
+                throw new IOException("Invalid central directory in " + url);
+            }
+            final int method = getShort(centralDirectory, position + 10);
+            final long compressedSize = getUnsignedInt(centralDirectory, position + 20);
+            final long size = getUnsignedInt(centralDirectory, position + 24);
+            final int nameLength = getShort(centralDirectory, position + 28);
+            final int extraLength = getShort(centralDirectory, position + 30);
+            final int commentLength = getShort(centralDirectory, position + 32);
+            final long localHeaderOffset = getUnsignedInt(centralDirectory, position + 42);
+            final String name = new String(centralDirectory, position + 46, nameLength, StandardCharsets.UTF_8);
+            result.put(name, new Entry(method, compressedSize, size, localHeaderOffset, nameLength, extraLength));
+            position += 46 + nameLength + extraLength + commentLength;
+        }
+        entries = result;
+        return entries;
+    }
+
+    private long length() {
+        return tailOffset + tail.length;
+    }
+
+    private void fetchTail(int length) throws IOException {
+        final Request.Builder builder = newRequest().header("Range", "bytes=-" + length);
+        try (Response response = client.newCall(builder.build()).execute()) {
+            final ResponseBody body = HttpHelper.body(response);
+            if (response.code() == 206) {
+                final Matcher matcher = CONTENT_RANGE.matcher(String.valueOf(response.header("Content-Range")));
+                if (!matcher.matches()) {
+                    throw new IOException("Unexpected Content-Range header " + response.header("Content-Range") + " for " + url);
+                }
+                tail = body.bytes();
+                tailOffset = Long.parseLong(matcher.group(1));
+            } else if (response.isSuccessful()) {
+                LOGGER.log(Level.FINE, () -> "Server does not support range requests, downloaded entire file: " + url);
+                tail = body.bytes();
+                tailOffset = 0;
+            } else {
+                throw new IOException("Received HTTP error response: " + response.code() + " for URL: " + url);
+            }
+        }
+    }
+
+    private byte[] read(long offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > length()) {
+            throw new IOException("Invalid range " + offset + "+" + length + " in " + url);
+        }
+        final byte[] result = new byte[length];
+        if (offset >= tailOffset) {
+            System.arraycopy(tail, (int) (offset - tailOffset), result, 0, length);
+            return result;
+        }
+
+        final Request.Builder builder = newRequest().header("Range", "bytes=" + offset + "-" + (offset + length - 1));
+        try (Response response = client.newCall(builder.build()).execute()) {
+            final ResponseBody body = HttpHelper.body(response);
+            if (response.code() != 206) {
+                throw new IOException("Received HTTP response: " + response.code() + " for range request to URL: " + url);
+            }
+            final byte[] bytes = body.bytes();
+            if (bytes.length != length) {
+                throw new IOException("Received " + bytes.length + " bytes instead of " + length + " for range request to URL: " + url);
+            }
+            return bytes;
+        }
+    }
+
+    private Request.Builder newRequest() {
+        final Request.Builder builder = new Request.Builder().url(url).get();
+        if (authorization != null) {
+            builder.header("Authorization", authorization);
+        }
+        return builder;
+    }
+
+    private static int getShort(byte[] b, int offset) {
+        return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int getInt(byte[] b, int offset) {
+        return (b[offset] & 0xFF) | (b[offset + 1] & 0xFF) << 8 | (b[offset + 2] & 0xFF) << 16 | (b[offset + 3] & 0xFF) << 24;
+    }
+
+    private static long getUnsignedInt(byte[] b, int offset) {
+        return getInt(b, offset) & 0xFFFFFFFFL;
+    }
+}
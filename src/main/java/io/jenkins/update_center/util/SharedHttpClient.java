@@ -0,0 +1,171 @@
+package io.jenkins.update_center.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The HTTP client used for all requests, so that connections (and their TLS sessions) are reused across requests.
+ *
+ * Configured using the following environment variables or system properties:
+ * <dl>
+ *     <dt>{@code HTTP_CONNECT_TIMEOUT_SECONDS}, {@code HTTP_READ_TIMEOUT_SECONDS}, {@code HTTP_CALL_TIMEOUT_SECONDS}</dt>
+ *     <dd>Timeouts, {@code 0} for none. Defaults to 10, 60, and 0 seconds respectively.</dd>
+ *     <dt>{@code HTTP_MAX_REQUESTS_PER_HOST}</dt>
+ *     <dd>How many requests to a single host may be in progress at the same time (until the response body is closed). Defaults to 16.</dd>
+ *     <dt>{@code HTTP_MAX_IDLE_CONNECTIONS}</dt>
+ *     <dd>How many idle connections to keep open. Defaults to 16.</dd>
+ *     <dt>{@code HTTP_ENABLE_HTTP2}</dt>
+ *     <dd>Whether to use HTTP/2 when a server supports it, which allows concurrent requests to share a connection. Defaults to {@code true}.</dd>
+ * </dl>
+ *
+ * The number of requests, failed requests, response bytes, and time to response headers are recorded per host and can
+ * be logged using {@link #logStatistics()}.
+ */
+public final class SharedHttpClient {
+    private SharedHttpClient() {}
+
+    private static final Logger LOGGER = Logger.getLogger(SharedHttpClient.class.getName());
+
+    private static final int MAX_REQUESTS_PER_HOST = Environment.getInteger("HTTP_MAX_REQUESTS_PER_HOST", 16);
+
+    private static final Map<String, HostStatistics> STATISTICS = new ConcurrentHashMap<>();
+    private static final Map<String, Semaphore> HOST_LIMITS = new ConcurrentHashMap<>();
+
+    private static final OkHttpClient CLIENT = createClient();
+
+    private static class HostStatistics {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+
+    /**
+     * Returns the shared client. Use {@link OkHttpClient#newBuilder()} to customize it, e.g. to add an authenticator,
+     * while still sharing connections and statistics.
+     *
+     * @return the shared client
+     */
+    @NonNull
+    public static OkHttpClient get() {
+        return CLIENT;
+    }
+
+    /**
+     * Logs the statistics of all requests so far.
+     */
+    public static void logStatistics() {
+        for (Map.Entry<String, HostStatistics> entry : new TreeMap<>(STATISTICS).entrySet()) {
+            final HostStatistics statistics = entry.getValue();
+            final long requests = statistics.requests.sum();
+            LOGGER.log(Level.INFO, String.format("%s: %d requests (%d failed), %d bytes received, %d ms average time to response",
+                    entry.getKey(), requests, statistics.failures.sum(), statistics.bytes.sum(),
+                    requests == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(statistics.nanos.sum() / requests)));
+        }
+        LOGGER.log(Level.INFO, "HTTP connections: " + CLIENT.connectionPool().connectionCount() + " open, " + CLIENT.connectionPool().idleConnectionCount() + " idle");
+    }
+
+    private static OkHttpClient createClient() {
+        final Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+        final OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(new ConnectionPool(Environment.getInteger("HTTP_MAX_IDLE_CONNECTIONS", 16), 5, TimeUnit.MINUTES))
+                .connectTimeout(Environment.getInteger("HTTP_CONNECT_TIMEOUT_SECONDS", 10), TimeUnit.SECONDS)
+                .readTimeout(Environment.getInteger("HTTP_READ_TIMEOUT_SECONDS", 60), TimeUnit.SECONDS)
+                .callTimeout(Environment.getInteger("HTTP_CALL_TIMEOUT_SECONDS", 0), TimeUnit.SECONDS)
+                .addInterceptor(SharedHttpClient::intercept);
+        if (!Boolean.parseBoolean(Environment.getString("HTTP_ENABLE_HTTP2", "true"))) {
+            // HTTP/2 is used by default if the server supports it
+            builder.protocols(Collections.singletonList(Protocol.HTTP_1_1));
+        }
+        return builder.build();
+    }
+
+    /*
+     * The dispatcher's limits only apply to asynchronous calls, but we mostly make synchronous ones, so limit
+     * concurrent requests per host here as well.
+     */
+    private static Response intercept(Interceptor.Chain chain) throws IOException {
+        final String host = chain.request().url().host();
+        final HostStatistics statistics = STATISTICS.computeIfAbsent(host, k -> new HostStatistics());
+        final Semaphore limit = HOST_LIMITS.computeIfAbsent(host, k -> new Semaphore(MAX_REQUESTS_PER_HOST));
+
+        try {
+            limit.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to send request to " + host, e);
+        }
+        final AtomicBoolean released = new AtomicBoolean();
+        final Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                limit.release();
+            }
+        };
+
+        statistics.requests.increment();
+        final long start = System.nanoTime();
+        final Response response;
+        try {
+            response = chain.proceed(chain.request());
+        } catch (IOException | RuntimeException e) {
+            statistics.failures.increment();
+            release.run();
+            throw e;
+        } finally {
+            statistics.nanos.add(System.nanoTime() - start);
+        }
+        if (!response.isSuccessful()) {
+            statistics.failures.increment();
+        }
+
+        final ResponseBody body = response.body();
+        if (body == null) {
+            release.run();
+            return response;
+        }
+        final ForwardingSource source = new ForwardingSource(body.source()) {
+            @Override
+            public long read(@NonNull Buffer sink, long byteCount) throws IOException {
+                final long read = super.read(sink, byteCount);
+                if (read > 0) {
+                    statistics.bytes.add(read);
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    release.run();
+                }
+            }
+        };
+        return response.newBuilder().body(ResponseBody.create(Okio.buffer(source), body.contentType(), body.contentLength())).build();
+    }
+}
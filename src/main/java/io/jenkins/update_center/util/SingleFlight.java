@@ -0,0 +1,80 @@
+package io.jenkins.update_center.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent loads of the same key: While a value is being loaded, other callers asking for the same key wait
+ * for that load to finish and get its result (or failure) instead of loading it again.
+ *
+ * Results are not retained once the load has finished; that's up to the caller, e.g. by writing a file to a cache.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class SingleFlight<K, V> {
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    /**
+     * Loads the value for the specified key, unless another thread is already doing that.
+     *
+     * @param key the key
+     * @param loader loads the value
+     * @return the loaded value
+     * @throws IOException if loading failed, in this thread or the one this thread waited for
+     */
+    public V load(@NonNull K key, @NonNull Loader<V> loader) throws IOException {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            final V value = loader.load();
+            future.complete(value);
+            return value;
+        } catch (IOException | RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * For tests: The load of the specified key currently in progress, if any.
+     */
+    CompletableFuture<V> getInFlight(@NonNull K key) {
+        return inFlight.get(key);
+    }
+
+    private static <V> V await(CompletableFuture<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (IOException) new InterruptedIOException("Interrupted while waiting for concurrent load").initCause(e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            // wrap so the stack trace shows this caller too
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+}
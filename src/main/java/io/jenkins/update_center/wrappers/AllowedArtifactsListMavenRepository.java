@@ -2,15 +2,13 @@ package io.jenkins.update_center.wrappers;
 
 import hudson.util.VersionNumber;
 import io.jenkins.update_center.JenkinsWar;
-import io.jenkins.update_center.HPI;
 import io.jenkins.update_center.Plugin;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Properties;
 import java.util.TreeMap;
 import java.util.logging.Level;
@@ -28,33 +26,27 @@ public class AllowedArtifactsListMavenRepository extends MavenRepositoryWrapper
 
     @Override
     public Collection<Plugin> listJenkinsPlugins() throws IOException {
-        final Collection<Plugin> plugins = base.listJenkinsPlugins();
-        for (Iterator<Plugin> pluginIterator = plugins.iterator(); pluginIterator.hasNext(); ) {
-            Plugin plugin = pluginIterator.next();
+        final List<Plugin> plugins = new ArrayList<>();
+        for (Plugin plugin : base.listJenkinsPlugins()) {
             final String listEntry = allowedArtifactsList.getProperty(plugin.getArtifactId());
 
             if (listEntry == null) {
-                pluginIterator.remove();
                 continue;
             }
 
             if (listEntry.equals("*")) {
-                continue; // entire artifactId allowed
+                plugins.add(plugin); // entire artifactId allowed
+                continue;
             }
 
             final List<String> allowedVersions = Arrays.stream(listEntry.split("\\s+")).map(String::trim).collect(Collectors.toList());
 
-            for (Iterator<Map.Entry<VersionNumber, HPI>> versionIterator = plugin.getArtifacts().entrySet().iterator(); versionIterator.hasNext(); ) {
-                Map.Entry<VersionNumber, HPI> entry = versionIterator.next();
-                HPI hpi = entry.getValue();
-                if (!allowedVersions.contains(hpi.version)) {
-                    versionIterator.remove();
-                }
-            }
-            if (plugin.getArtifacts().isEmpty()) {
+            final Plugin view = plugin.filter(hpi -> allowedVersions.contains(hpi.version));
+            if (view.getArtifacts().isEmpty()) {
                 LOGGER.log(Level.WARNING, "Individual versions of a plugin are allowed, but none of them matched: " + plugin.getArtifactId() + " versions: " + listEntry);
-                pluginIterator.remove();
+                continue;
             }
+            plugins.add(view);
         }
         return plugins;
     }
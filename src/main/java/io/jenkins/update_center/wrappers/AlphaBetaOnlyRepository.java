@@ -1,13 +1,9 @@
 package io.jenkins.update_center.wrappers;
 
-import hudson.util.VersionNumber;
-import io.jenkins.update_center.HPI;
 import io.jenkins.update_center.Plugin;
 
 import java.io.IOException;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.Map.Entry;
 
 /**
  * Filter down to alpha/beta releases of plugins (or the negation of it.)
@@ -27,21 +23,6 @@ public class AlphaBetaOnlyRepository extends MavenRepositoryWrapper {
 
     @Override
     public Collection<Plugin> listJenkinsPlugins() throws IOException {
-        Collection<Plugin> r = base.listJenkinsPlugins();
-        for (Iterator<Plugin> jtr = r.iterator(); jtr.hasNext();) {
-            Plugin h = jtr.next();
-
-            for (Iterator<Entry<VersionNumber, HPI>> itr = h.getArtifacts().entrySet().iterator(); itr.hasNext();) {
-                Entry<VersionNumber, HPI> e =  itr.next();
-                if (e.getValue().isAlphaOrBeta()^negative)
-                    continue;
-                itr.remove();
-            }
-
-            if (h.getArtifacts().isEmpty())
-                jtr.remove();
-        }
-
-        return r;
+        return filterPlugins(base.listJenkinsPlugins(), hpi -> hpi.isAlphaOrBeta() ^ negative);
     }
 }
@@ -0,0 +1,39 @@
+package io.jenkins.update_center.wrappers;
+
+import hudson.util.VersionNumber;
+import io.jenkins.update_center.JenkinsWar;
+import io.jenkins.update_center.Plugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.TreeMap;
+
+/**
+ * Delegating {@link MavenRepositoryWrapper} remembering the plugins and core releases offered by the base repository.
+ *
+ * Wrappers compute filtered views every time they're asked, which adds up when several generators (and several
+ * update sites in the same invocation) use the same wrapper chain. The underlying catalog is an immutable snapshot,
+ * so the result of a wrapper chain never changes and can be kept around.
+ */
+public class CachingMavenRepository extends MavenRepositoryWrapper {
+    private Collection<Plugin> plugins;
+    private TreeMap<VersionNumber, JenkinsWar> wars;
+
+    @Override
+    public synchronized Collection<Plugin> listJenkinsPlugins() throws IOException {
+        if (plugins == null) {
+            plugins = Collections.unmodifiableList(new ArrayList<>(base.listJenkinsPlugins()));
+        }
+        return plugins;
+    }
+
+    @Override
+    public synchronized TreeMap<VersionNumber, JenkinsWar> getJenkinsWarsByVersionNumber() throws IOException {
+        if (wars == null) {
+            wars = base.getJenkinsWarsByVersionNumber();
+        }
+        return new TreeMap<>(wars);
+    }
+}
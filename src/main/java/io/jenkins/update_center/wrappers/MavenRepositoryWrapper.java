@@ -3,6 +3,8 @@ package io.jenkins.update_center.wrappers;
 import hudson.util.VersionNumber;
 import io.jenkins.update_center.MavenRepository;
 import io.jenkins.update_center.ArtifactCoordinates;
+import io.jenkins.update_center.HPI;
+import io.jenkins.update_center.HpiContents;
 import io.jenkins.update_center.JenkinsWar;
 import io.jenkins.update_center.MavenArtifact;
 import io.jenkins.update_center.Plugin;
@@ -10,9 +12,12 @@ import io.jenkins.update_center.Plugin;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.Predicate;
 import java.util.jar.Manifest;
 
 public class MavenRepositoryWrapper implements MavenRepository {
@@ -54,6 +59,11 @@ public class MavenRepositoryWrapper implements MavenRepository {
         return base.getZipFileEntry(artifact, path);
     }
 
+    @Override
+    public HpiContents getHpiContents(MavenArtifact artifact) throws IOException {
+        return base.getHpiContents(artifact);
+    }
+
     @Override
     public File resolve(ArtifactCoordinates artifact) throws IOException {
         return base.resolve(artifact);
@@ -63,4 +73,23 @@ public class MavenRepositoryWrapper implements MavenRepository {
     public Collection<Plugin> listJenkinsPlugins() throws IOException {
         return base.listJenkinsPlugins();
     }
+
+    /**
+     * Creates views of the specified plugins only containing the releases matching the predicate.
+     * Plugins without any matching releases are not included.
+     *
+     * @param plugins the plugins to filter
+     * @param predicate determines which releases are retained
+     * @return the list of plugin views with at least one release
+     */
+    static List<Plugin> filterPlugins(Collection<Plugin> plugins, Predicate<? super HPI> predicate) {
+        List<Plugin> r = new ArrayList<>();
+        for (Plugin plugin : plugins) {
+            Plugin view = plugin.filter(predicate);
+            if (!view.getArtifacts().isEmpty()) {
+                r.add(view);
+            }
+        }
+        return r;
+    }
 }
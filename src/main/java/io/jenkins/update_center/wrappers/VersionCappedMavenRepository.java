@@ -5,13 +5,17 @@ import io.jenkins.update_center.JenkinsWar;
 import io.jenkins.update_center.BaseMavenRepository;
 import io.jenkins.update_center.HPI;
 import io.jenkins.update_center.Plugin;
+import io.jenkins.update_center.RequiredCoreIndex;
+import io.jenkins.update_center.VersionKey;
 
 import javax.annotation.CheckForNull;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.logging.Level;
 
@@ -24,7 +28,7 @@ public class VersionCappedMavenRepository extends MavenRepositoryWrapper {
      * Version number to cap. We only report plugins that are compatible with this core version.
      */
     @CheckForNull
-    private final VersionNumber capPlugin;
+    private final VersionKey capPlugin;
 
     /**
      * Version number to cap core. We only report core versions as high as this.
@@ -33,7 +37,7 @@ public class VersionCappedMavenRepository extends MavenRepositoryWrapper {
     private final VersionNumber capCore;
 
     public VersionCappedMavenRepository(@CheckForNull VersionNumber capPlugin, @CheckForNull VersionNumber capCore) {
-        this.capPlugin = capPlugin;
+        this.capPlugin = capPlugin == null ? null : VersionKey.of(capPlugin);
         this.capCore = capCore;
     }
 
@@ -48,28 +52,35 @@ public class VersionCappedMavenRepository extends MavenRepositoryWrapper {
 
     @Override
     public Collection<Plugin> listJenkinsPlugins() throws IOException {
-        Collection<Plugin> r = base.listJenkinsPlugins();
+        List<Plugin> r = new ArrayList<>();
 
-        for (Iterator<Plugin> jtr = r.iterator(); jtr.hasNext();) {
-            Plugin h = jtr.next();
+        for (Plugin h : base.listJenkinsPlugins()) {
 
+            final RequiredCoreIndex index = capPlugin == null ? null : h.getRequiredCoreIndex();
+            if (index != null) {
+                final List<HPI> selected = index.getNewestCompatible(capPlugin);
+                if (!selected.isEmpty()) {
+                    r.add(h.filter(selected::contains));
+                }
+                continue;
+            }
 
-            Map<VersionNumber, HPI> versionNumberHPIMap = new TreeMap<>(VersionNumber.DESCENDING);
+            Set<HPI> selected = new HashSet<>();
 
             for (Entry<VersionNumber, HPI> e : h.getArtifacts().entrySet()) {
                 if (capPlugin == null) {
                     // no cap
-                    versionNumberHPIMap.put(e.getKey(), e.getValue());
-                    if (versionNumberHPIMap.size() >= 2) {
+                    selected.add(e.getValue());
+                    if (selected.size() >= 2) {
                         break;
                     }
                     continue;
                 }
                 try {
-                    VersionNumber v = new VersionNumber(e.getValue().getRequiredJenkinsVersion());
+                    VersionKey v = e.getValue().getRequiredJenkinsVersionKey();
                     if (v.compareTo(capPlugin) <= 0) {
-                        versionNumberHPIMap.put(e.getKey(), e.getValue());
-                        if (versionNumberHPIMap.size() >= 2) {
+                        selected.add(e.getValue());
+                        if (selected.size() >= 2) {
                             break;
                         }
                     }
@@ -78,10 +89,9 @@ public class VersionCappedMavenRepository extends MavenRepositoryWrapper {
                 }
             }
 
-            h.getArtifacts().entrySet().retainAll(versionNumberHPIMap.entrySet());
-
-            if (h.getArtifacts().isEmpty())
-                jtr.remove();
+            if (!selected.isEmpty()) {
+                r.add(h.filter(selected::contains));
+            }
         }
 
         return r;
@@ -0,0 +1,127 @@
+package io.jenkins.update_center;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArtifactIndexTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void lookup() {
+        ArtifactIndex index = new ArtifactIndex();
+        for (int i = 0; i < 3000; i++) {
+            index.add("org.jenkins-ci.plugins", "plugin-" + (i % 100), "1." + (i / 100), "hpi", checksum(20, i), checksum(32, i), i * 1000L, i);
+        }
+        index.add("org.jenkins-ci.main", "jenkins-war", "2.0", "war", checksum(20, 1), null, 0, 0);
+        index.seal();
+
+        assertEquals(3001, index.rows().length);
+
+        int row = index.find(new ArtifactCoordinates("org.jenkins-ci.plugins", "plugin-42", "1.17", "hpi"));
+        assertEquals(new ArtifactCoordinates("org.jenkins-ci.plugins", "plugin-42", "1.17", "hpi"), index.getCoordinates(row));
+        assertArrayEquals(checksum(20, 1742), index.getSha1(row));
+        assertArrayEquals(checksum(32, 1742), index.getSha256(row));
+        assertEquals(1742000L, index.getTimestamp(row));
+        assertEquals(1742L, index.getSize(row));
+
+        row = index.find(new ArtifactCoordinates("org.jenkins-ci.main", "jenkins-war", "2.0", "war"));
+        assertNull(index.getSha256(row));
+
+        assertEquals(-1, index.find(new ArtifactCoordinates("org.jenkins-ci.plugins", "plugin-42", "1.17", "jpi")));
+        assertEquals(-1, index.find(new ArtifactCoordinates("org.jenkins-ci.plugins", "plugin-42", "1.30", "hpi")));
+        assertEquals(-1, index.find(new ArtifactCoordinates("io.jenkins.plugins", "plugin-42", "1.17", "hpi")));
+    }
+
+    @Test
+    public void lastAddedWins() {
+        ArtifactIndex index = new ArtifactIndex();
+        index.add("org.example", "example", "1.0", "hpi", checksum(20, 1), null, 1, 1);
+        index.add("org.example", "example", "1.1", "hpi", checksum(20, 2), null, 2, 2);
+        index.add("org.example", "example", "1.0", "hpi", checksum(20, 3), null, 3, 3);
+        index.seal();
+
+        assertEquals(2, index.rows().length);
+        int row = index.find(new ArtifactCoordinates("org.example", "example", "1.0", "hpi"));
+        assertArrayEquals(checksum(20, 3), index.getSha1(row));
+        assertEquals(3L, index.getSize(row));
+    }
+
+    @Test
+    public void lastAddedWinsAmongMany() {
+        ArtifactIndex index = new ArtifactIndex();
+        for (int i = 0; i < 3000; i++) {
+            final int plugin = (i * 37) % 100;
+            index.add("org.example", "plugin-" + plugin, "1.0", "hpi", checksum(20, i), null, i, i);
+        }
+        index.seal();
+
+        final int[] rows = index.rows();
+        assertEquals(100, rows.length);
+        for (int i = 1; i < rows.length; i++) {
+            assertTrue(index.getCoordinates(rows[i - 1]).artifactId.compareTo(index.getCoordinates(rows[i]).artifactId) < 0);
+        }
+        for (int plugin = 0; plugin < 100; plugin++) {
+            int last = -1;
+            for (int i = 0; i < 3000; i++) {
+                if ((i * 37) % 100 == plugin) {
+                    last = i;
+                }
+            }
+            assertEquals(last, index.getSize(index.find(new ArtifactCoordinates("org.example", "plugin-" + plugin, "1.0", "hpi"))));
+        }
+    }
+
+    @Test
+    public void writeAndRead() throws Exception {
+        ArtifactIndex index = new ArtifactIndex();
+        index.setCreated(12345L);
+        index.addPom("org.example:example:1.0", 10);
+        index.addPom("org.example:example:1.1", 30);
+        index.add("org.example", "example", "1.0", "hpi", checksum(20, 1), checksum(32, 1), 10, 100);
+        index.add("org.example", "example", "1.1", "hpi", checksum(20, 2), null, 20, 200);
+        index.add("org.example", "example", "1.0", "hpi", checksum(20, 3), checksum(32, 3), 15, 300);
+        index.seal();
+
+        File file = new File(tmp.getRoot(), "index.bin");
+        index.write(file);
+        ArtifactIndex read = ArtifactIndex.read(file);
+
+        assertEquals(12345L, read.getCreated());
+        assertEquals(30L, read.getLastModified());
+        assertTrue(read.hasPom("org.example:example:1.1"));
+        assertFalse(read.hasPom("org.example:example:1.2"));
+        assertEquals(2, read.rows().length);
+
+        int row = read.find(new ArtifactCoordinates("org.example", "example", "1.0", "hpi"));
+        assertArrayEquals(checksum(20, 3), read.getSha1(row));
+        assertArrayEquals(checksum(32, 3), read.getSha256(row));
+        assertEquals(15L, read.getTimestamp(row));
+        assertEquals(300L, read.getSize(row));
+        assertNull(read.getSha256(read.find(new ArtifactCoordinates("org.example", "example", "1.1", "hpi"))));
+
+        // apply changes
+        read.add("org.example", "example", "1.2", "hpi", checksum(20, 4), checksum(32, 4), 40, 400);
+        read.addPom("org.example:example:1.2", 40);
+        read.seal();
+        assertEquals(40L, read.getLastModified());
+        assertEquals(400L, read.getSize(read.find(new ArtifactCoordinates("org.example", "example", "1.2", "hpi"))));
+    }
+
+    private static byte[] checksum(int length, int seed) {
+        byte[] checksum = new byte[length];
+        for (int i = 0; i < length; i++) {
+            checksum[i] = (byte) (seed * 31 + i + 1);
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,80 @@
+package io.jenkins.update_center;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+import java.util.jar.Attributes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ManifestAttributesTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void storeRoundTrip() throws Exception {
+        Attributes attributes = new Attributes();
+        attributes.putValue("Jenkins-Version", "2.361.4");
+        attributes.putValue("Url", "https://github.com/jenkinsci/example-plugin");
+        attributes.putValue("Plugin-Dependencies", "credentials:2.6.1,git:4.0.0;resolution:=optional");
+        attributes.putValue("Plugin-Version", "1.0");
+
+        ManifestAttributesStore store = new ManifestAttributesStore();
+        store.put("c2hhMjU2", ManifestAttributes.from(attributes));
+        store.put("ZW1wdHk=", ManifestAttributes.from(new Attributes()));
+        assertTrue(store.isModified());
+
+        File file = new File(tmp.getRoot(), "caches/manifest-attributes.bin");
+        store.write(file);
+        assertFalse(store.isModified());
+
+        ManifestAttributesStore read = ManifestAttributesStore.read(file);
+        assertEquals(2, read.size());
+        ManifestAttributes manifest = read.get("c2hhMjU2");
+        assertEquals("2.361.4", manifest.getJenkinsVersion());
+        assertNull(manifest.getHudsonVersion());
+        assertNull(manifest.getCompatibleSinceVersion());
+        assertEquals("https://github.com/jenkinsci/example-plugin", manifest.getUrl());
+        List<HPI.Dependency> dependencies = manifest.getDependencies();
+        assertEquals(2, dependencies.size());
+        assertEquals("credentials", dependencies.get(0).name);
+        assertEquals("2.6.1", dependencies.get(0).version);
+        assertFalse(dependencies.get(0).optional);
+        assertEquals("git", dependencies.get(1).name);
+        assertEquals("4.0.0", dependencies.get(1).version);
+        assertTrue(dependencies.get(1).optional);
+
+        assertTrue(read.get("ZW1wdHk=").getDependencies().isEmpty());
+        assertNull(read.get("bWlzc2luZw=="));
+    }
+
+    @Test
+    public void malformedDependencies() throws Exception {
+        Attributes attributes = new Attributes();
+        attributes.putValue("Jenkins-Version", "2.361.4");
+        attributes.putValue("Plugin-Dependencies", "credentials:2.6.1,,git");
+
+        ManifestAttributesStore store = new ManifestAttributesStore();
+        store.put("c2hhMjU2", ManifestAttributes.from(attributes));
+        File file = new File(tmp.getRoot(), "caches/manifest-attributes.bin");
+        store.write(file);
+
+        for (ManifestAttributes manifest : new ManifestAttributes[] {ManifestAttributes.from(attributes), ManifestAttributesStore.read(file).get("c2hhMjU2")}) {
+            // only the dependencies are affected
+            assertEquals("2.361.4", manifest.getJenkinsVersion());
+            try {
+                manifest.getDependencies();
+                fail();
+            } catch (ArrayIndexOutOfBoundsException expected) {
+                // like HPI#getDependencies always did
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package io.jenkins.update_center;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Set;
+import java.util.jar.Manifest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class MavenRepositoryTest {
+
+    private static final byte[] INDEX_JELLY = "<div>Description</div>".getBytes(StandardCharsets.UTF_8);
+
+    private static class TestRepository extends BaseMavenRepository {
+        private final IOException pomFailure;
+
+        private TestRepository(IOException pomFailure) {
+            this.pomFailure = pomFailure;
+        }
+
+        @Override
+        protected Set<ArtifactCoordinates> listAllJenkinsWars(String groupId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<ArtifactCoordinates> listAllPlugins() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ArtifactMetadata getMetadata(MavenArtifact artifact) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Manifest getManifest(MavenArtifact artifact) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream getZipFileEntry(MavenArtifact artifact, String path) {
+            assertEquals("jar", artifact.artifact.packaging);
+            assertEquals("index.jelly", path);
+            return new ByteArrayInputStream(INDEX_JELLY);
+        }
+
+        @Override
+        public File resolve(ArtifactCoordinates artifact) throws IOException {
+            assertEquals("pom", artifact.packaging);
+            throw pomFailure;
+        }
+    }
+
+    private static MavenArtifact artifact(BaseMavenRepository repository) {
+        return new MavenArtifact(repository, new ArtifactCoordinates("the-group", "foo", "1.0", "hpi"));
+    }
+
+    @Test
+    public void missingPom() throws Exception {
+        TestRepository repository = new TestRepository(new FileNotFoundException("not found"));
+        HpiContents contents = repository.getHpiContents(artifact(repository));
+        assertArrayEquals(INDEX_JELLY, contents.getIndexJelly());
+        assertNull(contents.getPom());
+    }
+
+    @Test
+    public void failedPom() {
+        TestRepository repository = new TestRepository(new IOException("server error"));
+        try {
+            repository.getHpiContents(artifact(repository));
+            fail();
+        } catch (IOException e) {
+            assertEquals("server error", e.getMessage());
+        }
+    }
+}
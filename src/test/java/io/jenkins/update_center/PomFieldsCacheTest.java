@@ -0,0 +1,67 @@
+package io.jenkins.update_center;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PomFieldsCacheTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static byte[] pom(String name) {
+        return ("<project><name>" + name + "</name><scm><url>https://example.org/" + name + "</url></scm></project>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void keyedByContent() throws Exception {
+        PomFieldsCache cache = new PomFieldsCache(10);
+        PomFields first = cache.get("g:a:1", pom("first"));
+        assertEquals("first", first.getName());
+        assertTrue(first == cache.get("g:a:1", pom("first")));
+        assertEquals("second", cache.get("g:a:1", pom("second")).getName());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void boundedSize() throws Exception {
+        PomFieldsCache cache = new PomFieldsCache(2);
+        PomFields a = cache.get("g:a:1", pom("a"));
+        cache.get("g:b:1", pom("b"));
+        cache.get("g:a:1", pom("a"));
+        cache.get("g:c:1", pom("c"));
+        assertEquals(2, cache.size());
+        // b was least recently used
+        assertTrue(a == cache.get("g:a:1", pom("a")));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void writeAndRead() throws Exception {
+        PomFieldsCache cache = new PomFieldsCache(10);
+        cache.get("g:a:1", pom("a"));
+        cache.get("g:b:1", "<project><parent><groupId>g</groupId><artifactId>p</artifactId><version>1</version></parent></project>".getBytes(StandardCharsets.UTF_8));
+        assertTrue(cache.isModified());
+
+        File file = new File(tmp.getRoot(), "caches/pom-fields.bin");
+        cache.write(file);
+        assertFalse(cache.isModified());
+
+        PomFieldsCache read = PomFieldsCache.read(file, 10);
+        assertEquals(2, read.size());
+        assertFalse(read.isModified());
+        PomFields a = read.get("g:a:1", pom("a"));
+        assertEquals("a", a.getName());
+        assertEquals("https://example.org/a", a.getScmUrl());
+        assertNull(a.getParent());
+        assertEquals("g:p:1", read.get("g:b:1", "<project><parent><groupId>g</groupId><artifactId>p</artifactId><version>1</version></parent></project>".getBytes(StandardCharsets.UTF_8)).getParent().getGav());
+        assertFalse(read.isModified());
+    }
+}
@@ -0,0 +1,63 @@
+package io.jenkins.update_center;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PomFieldsTest {
+
+    @Test
+    public void namespacedPom() throws Exception {
+        PomFields fields = read("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" +
+                "  <modelVersion>4.0.0</modelVersion>\n" +
+                "  <parent>\n" +
+                "    <groupId>org.jenkins-ci.plugins</groupId>\n" +
+                "    <artifactId>plugin</artifactId>\n" +
+                "    <version>4.40</version>\n" +
+                "    <relativePath />\n" +
+                "  </parent>\n" +
+                "  <dependencies>\n" +
+                "    <dependency><name>Not the plugin name</name></dependency>\n" +
+                "  </dependencies>\n" +
+                "  <name>  Example\n   Plugin </name>\n" +
+                "  <description>Does <b>something</b> &amp; more<![CDATA[ <i>]]></description>\n" +
+                "  <url />\n" +
+                "  <scm>\n" +
+                "    <connection>scm:git:https://github.com/jenkinsci/example-plugin.git</connection>\n" +
+                "    <developerConnection>scm:git:git@github.com:jenkinsci/example-plugin.git</developerConnection>\n" +
+                "    <url>https://github.com/jenkinsci/example-plugin</url>\n" +
+                "  </scm>\n" +
+                "</project>\n");
+        assertEquals("Example Plugin", fields.getName());
+        // like dom4j, only text directly in the element
+        assertEquals("Does & more <i>", fields.getDescription());
+        assertEquals("", fields.getUrl());
+        assertEquals("https://github.com/jenkinsci/example-plugin", fields.getScmUrl());
+        assertEquals("scm:git:git@github.com:jenkinsci/example-plugin.git", fields.getScmDeveloperConnection());
+        assertEquals(new ArtifactCoordinates("org.jenkins-ci.plugins", "plugin", "4.40", "pom"), fields.getParent());
+    }
+
+    @Test
+    public void pomWithoutNamespace() throws Exception {
+        PomFields fields = read("<project><build><name>Not the plugin name</name></build><name>Example</name></project>");
+        assertEquals("Example", fields.getName());
+        assertNull(fields.getDescription());
+        assertNull(fields.getScmUrl());
+        assertNull(fields.getParent());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidPom() throws Exception {
+        read("<project><name>Example</project>");
+    }
+
+    private static PomFields read(String pom) throws IOException {
+        return PomFields.read(new ByteArrayInputStream(pom.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,107 @@
+package io.jenkins.update_center;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.jar.Manifest;
+
+import static org.junit.Assert.assertEquals;
+
+public class RequiredCoreIndexTest {
+
+    private static class TestRepository extends BaseMavenRepository {
+        @Override
+        protected Set<ArtifactCoordinates> listAllJenkinsWars(String groupId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<ArtifactCoordinates> listAllPlugins() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ArtifactMetadata getMetadata(MavenArtifact artifact) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Manifest getManifest(MavenArtifact artifact) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public InputStream getZipFileEntry(MavenArtifact artifact, String path) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public File resolve(ArtifactCoordinates artifact) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static HPI[] releases(int count) {
+        final TestRepository repository = new TestRepository();
+        final Plugin plugin = new Plugin("foo");
+        final HPI[] releases = new HPI[count];
+        for (int i = 0; i < count; i++) {
+            // newest first
+            releases[i] = new HPI(repository, new ArtifactCoordinates("the-group", "foo", "1." + (count - i), "hpi"), plugin);
+        }
+        return releases;
+    }
+
+    private static VersionKey[] cores(String... versions) {
+        return Arrays.stream(versions).map(v -> v == null ? null : VersionKey.of(v)).toArray(VersionKey[]::new);
+    }
+
+    @Test
+    public void newestCompatible() {
+        final HPI[] releases = releases(5);
+        final RequiredCoreIndex index = new RequiredCoreIndex(releases, cores("2.400", null, "2.300", "2.350", "2.200"));
+
+        assertEquals(Arrays.asList(releases[0], releases[2]), index.getNewestCompatible(VersionKey.of("2.500")));
+        assertEquals(Arrays.asList(releases[0], releases[2]), index.getNewestCompatible(VersionKey.of("2.400")));
+        assertEquals(Arrays.asList(releases[2], releases[3]), index.getNewestCompatible(VersionKey.of("2.360")));
+        assertEquals(Arrays.asList(releases[2], releases[4]), index.getNewestCompatible(VersionKey.of("2.300")));
+        assertEquals(Collections.singletonList(releases[4]), index.getNewestCompatible(VersionKey.of("2.250")));
+        assertEquals(Collections.emptyList(), index.getNewestCompatible(VersionKey.of("2.100")));
+    }
+
+    @Test
+    public void empty() {
+        assertEquals(Collections.emptyList(), new RequiredCoreIndex(new HPI[0], new VersionKey[0]).getNewestCompatible(VersionKey.of("2.500")));
+    }
+
+    @Test
+    public void sameAsScanningReleases() {
+        final Random random = new Random(42);
+        for (int round = 0; round < 100; round++) {
+            final HPI[] releases = releases(1 + random.nextInt(30));
+            final VersionKey[] cores = new VersionKey[releases.length];
+            for (int i = 0; i < cores.length; i++) {
+                cores[i] = random.nextInt(10) == 0 ? null : VersionKey.of("2." + (100 + random.nextInt(20)));
+            }
+            final RequiredCoreIndex index = new RequiredCoreIndex(releases, cores);
+            for (int cap = 95; cap < 125; cap++) {
+                final VersionKey core = VersionKey.of("2." + cap);
+                final List<HPI> expected = new ArrayList<>();
+                for (int i = 0; i < releases.length && expected.size() < 2; i++) {
+                    if (cores[i] != null && cores[i].compareTo(core) <= 0) {
+                        expected.add(releases[i]);
+                    }
+                }
+                assertEquals(expected, index.getNewestCompatible(core));
+            }
+        }
+    }
+}
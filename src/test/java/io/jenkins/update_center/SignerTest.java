@@ -0,0 +1,41 @@
+package io.jenkins.update_center;
+
+import io.jenkins.update_center.json.JsonSignature;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+
+import static org.junit.Assert.assertEquals;
+
+public class SignerTest {
+
+    private static byte[] sign(String algorithm, KeyPair keyPair, byte[] content) throws Exception {
+        Signature signature = Signature.getInstance(algorithm);
+        signature.initSign(keyPair.getPrivate());
+        signature.update(content);
+        return signature.sign();
+    }
+
+    @Test
+    public void sameAsStreamingSignatures() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        byte[] content = "{\"updateCenterVersion\":\"1\"}".getBytes(StandardCharsets.UTF_8);
+
+        Signer.SignatureGenerator signatureGenerator = new Signer.SignatureGenerator(keyPair.getPublic(), keyPair.getPrivate());
+        JsonSignature signature = new JsonSignature();
+        // the generator is reused for all files, so sign something else first
+        signatureGenerator.fill(new JsonSignature(), "{}".getBytes(StandardCharsets.UTF_8));
+        signatureGenerator.fill(signature, content);
+
+        assertEquals("gbUL06xGNMr9FCUi29bpZnj3gRw=", signature.getDigest());
+        assertEquals(Base64.encodeBase64String(sign("SHA1withRSA", keyPair, content)), signature.getSignature());
+        assertEquals(Hex.encodeHexString(sign("SHA512withRSA", keyPair, content)), signature.getSignature512());
+    }
+}
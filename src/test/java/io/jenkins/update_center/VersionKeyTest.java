@@ -0,0 +1,45 @@
+package io.jenkins.update_center;
+
+import hudson.util.VersionNumber;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VersionKeyTest {
+    private static final String[] VERSIONS = {
+            "1.0", "1.0.0", "1.0.1", "1.2", "1.10", "1.395", "1.0-beta-1", "1.0-SNAPSHOT", "2.0-rc-1", "2.0",
+            "2.361.4", "2.362", "2.1000.v1234abcd", "65535.1", "1.20230101", "1.2.3.4", "1.2.3.4.5", "1.02", "3",
+    };
+
+    @Test
+    public void pack() {
+        assertEquals(0x0002_0169_0004_0000L, VersionKey.pack("2.361.4"));
+        assertEquals(VersionKey.pack("1.2"), VersionKey.pack("1.2.0.0"));
+        assertTrue(VersionKey.pack("1.0-SNAPSHOT") < 0);
+        assertTrue(VersionKey.pack("1.2.3.4.5") < 0);
+        assertTrue(VersionKey.pack("1.65536") < 0);
+        assertTrue(VersionKey.pack("40000.1") < 0);
+        assertTrue(VersionKey.pack("1..2") < 0);
+        assertTrue(VersionKey.pack("1.2.") < 0);
+        assertTrue(VersionKey.pack("") < 0);
+    }
+
+    @Test
+    public void sameOrderAsVersionNumber() {
+        for (String a : VERSIONS) {
+            for (String b : VERSIONS) {
+                int expected = Integer.signum(new VersionNumber(a).compareTo(new VersionNumber(b)));
+                assertEquals(a + " vs. " + b, expected, Integer.signum(VersionKey.of(a).compareTo(VersionKey.of(b))));
+                assertEquals(a + " vs. " + b, expected == 0, VersionKey.of(a).equals(VersionKey.of(b)));
+                assertEquals(a + " vs. " + b, -expected, Integer.signum(VersionKey.DESCENDING.compare(new VersionNumber(a), new VersionNumber(b))));
+            }
+        }
+    }
+
+    @Test
+    public void interned() {
+        assertTrue(VersionKey.of("2.361.4") == VersionKey.of(new String("2.361.4")));
+        assertTrue(VersionKey.of("2.361.4").getVersionNumber() == VersionKey.of("2.361.4").getVersionNumber());
+    }
+}
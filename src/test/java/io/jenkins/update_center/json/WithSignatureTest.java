@@ -0,0 +1,78 @@
+package io.jenkins.update_center.json;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.annotation.JSONField;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import io.jenkins.update_center.Signer;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class WithSignatureTest {
+
+    private static String withMember(String json, String name, String value) throws Exception {
+        return WithSignature.withMember(json.getBytes(StandardCharsets.UTF_8), name, value.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    @Test
+    public void memberPosition() throws Exception {
+        assertEquals("{\"signature\":{}}", withMember("{}", "signature", "{}"));
+        assertEquals("{\"a\":1,\"signature\":{}}", withMember("{\"a\":1}", "signature", "{}"));
+        assertEquals("{\"signature\":{},\"z\":1}", withMember("{\"z\":1}", "signature", "{}"));
+        // nested members and strings don't count
+        assertEquals("{\"a\":{\"x\":\"},\\\"z\\\":\",\"zz\":[{\"zzz\":1}]},\"signature\":{},\"updateCenterVersion\":\"1\"}",
+                withMember("{\"a\":{\"x\":\"},\\\"z\\\":\",\"zz\":[{\"zzz\":1}]},\"updateCenterVersion\":\"1\"}", "signature", "{}"));
+    }
+
+    @Test
+    public void sameAsSecondSerialization() throws Exception {
+        JsonSignature signature = new JsonSignature();
+        signature.setCertificates(Collections.singletonList("Y2VydA=="));
+        signature.setDigest("ZGlnZXN0");
+        signature.setSignature("c2lnbmF0dXJl");
+        signature.setDigest512("abcdef");
+        signature.setSignature512("012345");
+        Signer signer = new Signer() {
+            @Override
+            public JsonSignature sign(byte[] json) {
+                return signature;
+            }
+        };
+
+        Root root = new Root();
+        String compact = root.encodeWithSignature(signer, false);
+        assertEquals(JSON.toJSONString(root, SerializerFeature.DisableCircularReferenceDetect), compact);
+
+        String pretty = root.encodeWithSignature(signer, true);
+        assertEquals(JSON.toJSONString(root, SerializerFeature.DisableCircularReferenceDetect, SerializerFeature.PrettyFormat), pretty);
+    }
+
+    public static class Root extends WithSignature {
+        @JSONField
+        public String connectionCheckUrl = "http://www.google.com/";
+
+        @JSONField
+        public List<String> plugins = Arrays.asList("a", "b\"},{", "\u00e9", "tab\tand\\backslash");
+
+        @JSONField
+        public List<String> empty = Collections.emptyList();
+
+        @JSONField
+        public Map<String, Object> nested = new TreeMap<>();
+
+        @JSONField
+        public String updateCenterVersion = "1";
+
+        public Root() {
+            nested.put("empty", Collections.emptyMap());
+            nested.put("list", Collections.singletonList(Collections.singletonMap("key", "[value]")));
+        }
+    }
+}
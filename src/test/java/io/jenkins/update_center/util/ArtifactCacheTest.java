@@ -0,0 +1,52 @@
+package io.jenkins.update_center.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class ArtifactCacheTest {
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private static final byte[] CONTENT = "content".getBytes(StandardCharsets.UTF_8);
+    private static final String CONTENT_SHA1 = "040f06fd774092478d450774f5ba30c5da78acc8";
+
+    @Test
+    public void putExisting() throws Exception {
+        ArtifactCache cache = new ArtifactCache(tmp.getRoot());
+        String key = ArtifactCache.checksumKey("sha1", CONTENT_SHA1);
+        assertNull(cache.get(key));
+
+        File file = cache.put(key, new ByteArrayInputStream(CONTENT), CONTENT_SHA1);
+        // e.g. stored concurrently by another process using the same directory
+        assertEquals(file, cache.put(key, new ByteArrayInputStream(CONTENT), CONTENT_SHA1));
+        assertEquals(file, cache.get(key));
+        assertArrayEquals(CONTENT, Files.readAllBytes(file.toPath()));
+        assertEquals(1, file.getParentFile().list().length);
+    }
+
+    @Test
+    public void checksumMismatch() throws Exception {
+        ArtifactCache cache = new ArtifactCache(tmp.getRoot());
+        String key = ArtifactCache.checksumKey("sha1", CONTENT_SHA1);
+        try {
+            cache.put(key, new ByteArrayInputStream("other".getBytes(StandardCharsets.UTF_8)), CONTENT_SHA1);
+            fail("Expected checksum mismatch");
+        } catch (IOException e) {
+            // expected
+        }
+        assertNull(cache.get(key));
+        assertEquals(0, new File(tmp.getRoot(), key).getParentFile().list().length);
+    }
+}
@@ -0,0 +1,46 @@
+package io.jenkins.update_center.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ByteArrayCacheTest {
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ByteArrayCache cache = new ByteArrayCache(3 * (96 + 2 + 100));
+        cache.put("a", new byte[100]);
+        cache.put("b", new byte[100]);
+        cache.put("c", new byte[100]);
+        assertEquals(3, cache.size());
+
+        // 'a' is now more recently used than 'b'
+        assertArrayEquals(new byte[100], cache.get("a"));
+        cache.put("d", new byte[100]);
+
+        assertNull(cache.get("b"));
+        assertArrayEquals(new byte[100], cache.get("a"));
+        assertArrayEquals(new byte[100], cache.get("c"));
+        assertArrayEquals(new byte[100], cache.get("d"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(4, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertTrue(cache.getBytes() <= 3 * (96 + 2 + 100));
+    }
+
+    @Test
+    public void replaceAndOversized() {
+        ByteArrayCache cache = new ByteArrayCache(1000);
+        cache.put("a", new byte[100]);
+        cache.put("a", new byte[200]);
+        assertEquals(1, cache.size());
+        assertEquals(96 + 2 + 200, cache.getBytes());
+
+        cache.put("huge", new byte[1000]);
+        assertNull(cache.get("huge"));
+        assertEquals(200, cache.get("a").length);
+        assertEquals(0, cache.getEvictions());
+    }
+}
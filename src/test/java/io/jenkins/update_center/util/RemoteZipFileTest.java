@@ -0,0 +1,226 @@
+package io.jenkins.update_center.util;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class RemoteZipFileTest {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private static final byte[] MANIFEST = "Manifest-Version: 1.0\r\nShort-Name: example\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INDEX_JELLY = "<div>This plugin does something.</div>".getBytes(StandardCharsets.UTF_8);
+
+    private MockWebServer server;
+    private byte[] zip;
+
+    @Before
+    public void setUp() throws Exception {
+        // Incompressible padding so the entries of interest aren't all in the first range request
+        byte[] padding = new byte[200_000];
+        new Random(42).nextBytes(padding);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zos.write(MANIFEST);
+            zos.closeEntry();
+
+            zos.putNextEntry(new ZipEntry("WEB-INF/lib/example.jar"));
+            zos.write(padding);
+            zos.closeEntry();
+
+            ZipEntry stored = new ZipEntry("index.jelly");
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(INDEX_JELLY.length);
+            CRC32 crc = new CRC32();
+            crc.update(INDEX_JELLY);
+            stored.setCrc(crc.getValue());
+            zos.putNextEntry(stored);
+            zos.write(INDEX_JELLY);
+            zos.closeEntry();
+        }
+        zip = baos.toByteArray();
+
+        server = new MockWebServer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void rangeRequests() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String range = request.getHeader("Range");
+                Matcher matcher = RANGE.matcher(range == null ? "" : range);
+                if (!matcher.matches()) {
+                    return new MockResponse().setResponseCode(400);
+                }
+                int from, to;
+                if (matcher.group(1).isEmpty()) {
+                    from = Math.max(0, zip.length - Integer.parseInt(matcher.group(2)));
+                    to = zip.length - 1;
+                } else {
+                    from = Integer.parseInt(matcher.group(1));
+                    to = Math.min(zip.length - 1, Integer.parseInt(matcher.group(2)));
+                }
+                return new MockResponse().setResponseCode(206)
+                        .setHeader("Content-Range", "bytes " + from + "-" + to + "/" + zip.length)
+                        .setBody(new Buffer().write(Arrays.copyOfRange(zip, from, to + 1)));
+            }
+        });
+        server.start();
+
+        RemoteZipFile file = new RemoteZipFile(new OkHttpClient(), server.url("/example.hpi").toString(), "Basic Zm9vOmJhcg==");
+        assertArrayEquals(MANIFEST, file.getEntry("META-INF/MANIFEST.MF"));
+        assertArrayEquals(INDEX_JELLY, file.getEntry("index.jelly"));
+        assertNull(file.getEntry("does-not-exist"));
+
+        // end of file (including central directory and the last entry), then the manifest at the start of the file
+        assertEquals(2, server.getRequestCount());
+        assertEquals("Basic Zm9vOmJhcg==", server.takeRequest().getHeader("Authorization"));
+    }
+
+    @Test
+    public void noRangeSupport() throws Exception {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(new Buffer().write(zip));
+            }
+        });
+        server.start();
+
+        RemoteZipFile file = new RemoteZipFile(new OkHttpClient(), server.url("/example.hpi").toString(), null);
+        assertArrayEquals(INDEX_JELLY, file.getEntry("index.jelly"));
+        assertArrayEquals(MANIFEST, file.getEntry("META-INF/MANIFEST.MF"));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void maxEntriesWithoutZip64() throws Exception {
+        // The end of central directory record can hold up to 0xFFFF entries, ZipOutputStream would use ZIP64 for them
+        ByteArrayOutputStream localHeaders = new ByteArrayOutputStream();
+        ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+        for (int i = 0; i < 0xFFFF; i++) {
+            byte[] name = ("entry-" + i).getBytes(StandardCharsets.UTF_8);
+            byte[] content = i == 0xFFFE ? INDEX_JELLY : new byte[0];
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            int offset = localHeaders.size();
+
+            writeInt(localHeaders, 0x04034b50);
+            writeShort(localHeaders, 10); // version needed
+            writeShort(localHeaders, 0); // flags
+            writeShort(localHeaders, 0); // stored
+            writeInt(localHeaders, 0); // time and date
+            writeInt(localHeaders, (int) crc.getValue());
+            writeInt(localHeaders, content.length);
+            writeInt(localHeaders, content.length);
+            writeShort(localHeaders, name.length);
+            writeShort(localHeaders, 0); // extra field length
+            localHeaders.write(name);
+            localHeaders.write(content);
+
+            writeInt(centralDirectory, 0x02014b50);
+            writeShort(centralDirectory, 20); // version made by
+            writeShort(centralDirectory, 10); // version needed
+            writeShort(centralDirectory, 0); // flags
+            writeShort(centralDirectory, 0); // stored
+            writeInt(centralDirectory, 0); // time and date
+            writeInt(centralDirectory, (int) crc.getValue());
+            writeInt(centralDirectory, content.length);
+            writeInt(centralDirectory, content.length);
+            writeShort(centralDirectory, name.length);
+            writeShort(centralDirectory, 0); // extra field length
+            writeShort(centralDirectory, 0); // comment length
+            writeShort(centralDirectory, 0); // disk number
+            writeShort(centralDirectory, 0); // internal attributes
+            writeInt(centralDirectory, 0); // external attributes
+            writeInt(centralDirectory, offset);
+            centralDirectory.write(name);
+        }
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        localHeaders.writeTo(baos);
+        centralDirectory.writeTo(baos);
+        writeInt(baos, 0x06054b50);
+        writeShort(baos, 0); // disk number
+        writeShort(baos, 0); // disk with central directory
+        writeShort(baos, 0xFFFF); // entries on this disk
+        writeShort(baos, 0xFFFF); // entries
+        writeInt(baos, centralDirectory.size());
+        writeInt(baos, localHeaders.size());
+        writeShort(baos, 0); // comment length
+        zip = baos.toByteArray();
+        serveWithoutRanges();
+
+        RemoteZipFile file = new RemoteZipFile(new OkHttpClient(), server.url("/example.hpi").toString(), null);
+        assertArrayEquals(INDEX_JELLY, file.getEntry("entry-65534"));
+        assertArrayEquals(new byte[0], file.getEntry("entry-0"));
+    }
+
+    @Test(expected = IOException.class)
+    public void zip64() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(baos)) {
+            for (int i = 0; i < 0xFFFF; i++) {
+                zos.putNextEntry(new ZipEntry("entry-" + i));
+                zos.closeEntry();
+            }
+        }
+        zip = baos.toByteArray();
+        serveWithoutRanges();
+
+        new RemoteZipFile(new OkHttpClient(), server.url("/example.hpi").toString(), null).getEntry("entry-0");
+    }
+
+    private void serveWithoutRanges() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setBody(new Buffer().write(zip));
+            }
+        });
+        server.start();
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        writeShort(out, value);
+        writeShort(out, value >>> 16);
+    }
+
+    @Test(expected = IOException.class)
+    public void notFound() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.start();
+
+        new RemoteZipFile(new OkHttpClient(), server.url("/example.hpi").toString(), null).getEntry("META-INF/MANIFEST.MF");
+    }
+}